@@ -7,18 +7,21 @@ package org.caleydo.view.crossword.api.model;
 
 import java.util.Arrays;
 
-import org.apache.commons.lang.StringUtils;
 import org.caleydo.core.data.selection.SelectionType;
 import org.caleydo.core.id.IDType;
 import org.caleydo.core.util.color.Color;
 import org.caleydo.core.util.function.InterpolatingFunctions;
 import org.caleydo.core.view.opengl.layout2.GLGraphics;
 import org.caleydo.view.crossword.api.ui.band.Route;
+import org.caleydo.view.crossword.api.ui.layout.IGraphEdge;
 import org.caleydo.view.crossword.spi.model.IBandRenderer;
+import org.caleydo.view.crossword.spi.model.IBandRenderer.EBandMode;
 
 /**
  * this class represents a small fragment of a band representation including a path color and a set of represented ids
  *
+ * the represented ids are the intersection of the underlying {@link IGraphEdge}, which will only be computed on demand
+ *
  * @author Samuel Gratzl
  *
  */
@@ -26,15 +29,15 @@ public class BandRoute implements IBandRenderer {
 	private final Route route;
 	private final Color color;
 
-	private final TypedSet ids;
+	private final IGraphEdge edge;
 
 	private final float radius1;
 	private final float radius2;
 
-	public BandRoute(Route route, Color color, TypedSet ids, float radius1, float radius2) {
+	public BandRoute(Route route, Color color, IGraphEdge edge, float radius1, float radius2) {
 		this.route = route;
 		this.color = color;
-		this.ids = ids;
+		this.edge = edge;
 		this.radius1 = radius1;
 		this.radius2 = radius2;
 	}
@@ -42,11 +45,20 @@ public class BandRoute implements IBandRenderer {
 	@Override
 	public void render(GLGraphics g, float w, float h, IBandHost host) {
 		renderRoute(g, 1.0f, color);
-		float factor = 1.f / ids.size();
-		for (SelectionType type : Arrays.asList(SelectionType.MOUSE_OVER, SelectionType.SELECTION)) {
-			int s = host.getSelected(ids, type);
-			if (s > 0)
-				renderRoute(g, s * factor, type.getColor());
+		final int size = edge.getIntersectionSize();
+		if (size > 0) { // nothing to highlight within an empty band
+			float factor = 1.f / size;
+			final IDType idType = getIdType();
+			for (SelectionType type : Arrays.asList(SelectionType.MOUSE_OVER, SelectionType.SELECTION)) {
+				if (!host.hasSelected(idType, type))
+					continue;
+				// counted against both ends, such that the intersection is just materialized for labels and picking
+				int s = host.getSelected(getSourceIds(), getTargetIds(), type);
+				if (s > 0)
+					renderRoute(g, s * factor, type.getColor());
+			}
+			if (host.getBandMode(idType) == EBandMode.FRAGMENT)
+				renderFragment(g, factor, host.getFragments(idType));
 		}
 
 		g.color(color.darker());
@@ -54,6 +66,20 @@ public class BandRoute implements IBandRenderer {
 		g.drawPath(route);
 	}
 
+	/**
+	 * highlights the ids that are shared just by the two ends of this band
+	 */
+	private void renderFragment(GLGraphics g, float factor, TypedSetFragments fragments) {
+		if (fragments == null)
+			return;
+		int mask = fragments.maskOf(getSourceIds(), getTargetIds());
+		if (mask == 0)
+			return;
+		int exclusive = fragments.getExclusiveCardinality(mask);
+		if (exclusive > 0)
+			renderRoute(g, exclusive * factor, color.darker());
+	}
+
 	private void renderRoute(GLGraphics g, float f, Color c) {
 		g.color(c.r, c.g, c.b, 0.5f);
 		route.setRadiusInterpolator(InterpolatingFunctions.linear(radius1 * f, radius2 * f));
@@ -62,20 +88,35 @@ public class BandRoute implements IBandRenderer {
 
 	@Override
 	public String getLabel() {
-		return ids.getIdType().getTypeName() + ": " + StringUtils.join(ids, ",");
+		TypedSet ids = getIds();
+		StringBuilder b = new StringBuilder(ids.getIdType().getTypeName()).append(": ");
+		IIntIterator it = ids.intIterator();
+		if (it.hasNext())
+			b.append(it.nextInt());
+		while (it.hasNext())
+			b.append(',').append(it.nextInt());
+		return b.toString();
 	}
 
 	/**
-	 * @return the ids, see {@link #ids}
+	 * @return the ids, the intersection of the {@link #edge}
 	 */
 	@Override
 	public TypedSet getIds() {
-		return ids;
+		return edge.getIntersection();
+	}
+
+	private TypedSet getSourceIds() {
+		return edge.getSource().getIDs(edge.getSourceConnector().getDimension());
+	}
+
+	private TypedSet getTargetIds() {
+		return edge.getTarget().getIDs(edge.getTargetConnector().getDimension());
 	}
 
 	@Override
 	public IDType getIdType() {
-		return ids.getIdType();
+		return getSourceIds().getIdType();
 	}
 
 	@Override
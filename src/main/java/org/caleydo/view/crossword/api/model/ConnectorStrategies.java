@@ -14,10 +14,9 @@ import org.caleydo.view.crossword.spi.model.IConnectorStrategy;
 public class ConnectorStrategies {
 	public static final IConnectorStrategy SHARED = new IConnectorStrategy() {
 		@Override
-		public CenterRadius update(TypedSet ids, TypedSet intersection) {
+		public CenterRadius update(TypedSet ids, int intersectionSize) {
 			int max = ids.size();
-			int have = intersection.size();
-			float size = have / (float) max;
+			float size = max == 0 ? 0 : intersectionSize / (float) max;
 			float offset = (1 - size) * 0.5f;
 			float radius = size * 0.5f;
 			return new CenterRadius(offset + radius, radius);
@@ -39,10 +38,9 @@ public class ConnectorStrategies {
 		}
 
 		@Override
-		public CenterRadius update(TypedSet ids, TypedSet intersection) {
+		public CenterRadius update(TypedSet ids, int intersectionSize) {
 			int max = ids.size();
-			int have = intersection.size();
-			float size = have / (float) max;
+			float size = max == 0 ? 0 : intersectionSize / (float) max;
 			float radius = size * 0.5f;
 			return new CenterRadius(offset + radius, radius);
 		}
@@ -0,0 +1,16 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.api.model;
+
+/**
+ * a visitor of primitive int values, see {@link TypedSet#forEachInt(IIntConsumer)}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public interface IIntConsumer {
+	void accept(int value);
+}
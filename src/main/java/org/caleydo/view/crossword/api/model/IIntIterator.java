@@ -0,0 +1,18 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.api.model;
+
+/**
+ * a primitive iterator over int values, without boxing
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public interface IIntIterator {
+	boolean hasNext();
+
+	int nextInt();
+}
@@ -15,6 +15,10 @@ package org.caleydo.view.crossword.api.model;
 public class PerspectiveMetaData {
 	public static final int FLAG_CHILD = 1 << 1;
 	public static final int FLAG_SPLITTED = 1 << 2;
+	/**
+	 * the perspective aggregates multiple small groups of a split
+	 */
+	public static final int FLAG_AGGREGATED = 1 << 3;
 
 	private int flags;
 	/**
@@ -43,4 +47,8 @@ public class PerspectiveMetaData {
 	public boolean isSplitted() {
 		return isSet(FLAG_SPLITTED);
 	}
+
+	public boolean isAggregated() {
+		return isSet(FLAG_AGGREGATED);
+	}
 }
@@ -6,7 +6,7 @@
 package org.caleydo.view.crossword.api.model;
 
 import java.util.AbstractSet;
-import java.util.BitSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -14,26 +14,68 @@ import java.util.Objects;
 import java.util.Set;
 
 import org.caleydo.core.id.IDType;
-import org.caleydo.view.crossword.internal.util.BitSetSet;
+import org.caleydo.view.crossword.internal.util.Fingerprints;
+import org.caleydo.view.crossword.internal.util.IDDictionary;
+import org.caleydo.view.crossword.internal.util.IIntSet;
+import org.caleydo.view.crossword.internal.util.ImmutableBitSetSet;
+import org.caleydo.view.crossword.internal.util.IntSetKernels;
+import org.caleydo.view.crossword.internal.util.RoaringSet;
+import org.caleydo.view.crossword.internal.util.SetRepresentations;
+import org.caleydo.view.crossword.internal.util.SortedIntSet;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
+import com.google.common.collect.UnmodifiableIterator;
 
 /**
  * a read only {@link Set} of integers with its {@link IDType}
  *
+ * the ids might be stored as dense ordinals of an {@link IDDictionary}, in which case they are transparently
+ * translated back to the real ids by all the accessors. Set operations between sets of the same dictionary work on
+ * the ordinals directly.
+ *
  * @author Samuel Gratzl
  *
  */
 public final class TypedSet extends AbstractSet<Integer> {
+	/**
+	 * canonical instances, see {@link #intern()}
+	 */
+	private static final Interner<TypedSet> INTERNER = Interners.newWeakInterner();
+
 	private final Set<Integer> wrappee;
 	private final IDType idType;
+	/**
+	 * the dictionary in which ordinal space the {@link #wrappee} is stored, or <code>null</code> if the wrappee contains
+	 * the ids directly
+	 */
+	private final IDDictionary dictionary;
+
+	/**
+	 * lazily computed order independent 64 bit content fingerprint, see {@link #getFingerprint()}
+	 */
+	private long fingerprint;
+	private volatile boolean fingerprinted = false;
 
 	public TypedSet(Set<Integer> wrappee, IDType idType) {
-		this.wrappee = Preconditions.checkNotNull(wrappee);
+		this(wrappee, idType, null);
+	}
+
+	/**
+	 * @param ordinals
+	 *            the ordinals of the ids within the given dictionary
+	 * @param idType
+	 * @param dictionary
+	 *            the dictionary of the ordinals or <code>null</code> if the ids are stored directly
+	 */
+	public TypedSet(Set<Integer> ordinals, IDType idType, IDDictionary dictionary) {
+		this.wrappee = Preconditions.checkNotNull(ordinals);
 		this.idType = Preconditions.checkNotNull(idType);
+		this.dictionary = dictionary;
 	}
 
 	/**
@@ -43,6 +85,13 @@ public final class TypedSet extends AbstractSet<Integer> {
 		return idType;
 	}
 
+	/**
+	 * @return the dictionary, see {@link #dictionary}
+	 */
+	public IDDictionary getDictionary() {
+		return dictionary;
+	}
+
 	@Override
 	public int size() {
 		return wrappee.size();
@@ -55,26 +104,203 @@ public final class TypedSet extends AbstractSet<Integer> {
 
 	@Override
 	public boolean contains(Object o) {
-		return wrappee.contains(o);
+		if (dictionary == null)
+			return wrappee.contains(o);
+		return o instanceof Integer && contains(((Integer) o).intValue());
 	}
 
 	@Override
 	public Iterator<Integer> iterator() {
-		return Iterators.unmodifiableIterator(wrappee.iterator());
+		if (dictionary == null)
+			return Iterators.unmodifiableIterator(wrappee.iterator());
+		final IIntIterator it = intIterator();
+		return new UnmodifiableIterator<Integer>() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public Integer next() {
+				return it.nextInt();
+			}
+		};
+	}
+
+	/**
+	 * returns the 64 bit content fingerprint of this set, which is independent of the id type, the backend and the
+	 * iteration order. Two sets with different fingerprints are never equal
+	 *
+	 * @return
+	 */
+	public long getFingerprint() {
+		if (!fingerprinted) {
+			final long[] h = { 0 };
+			forEachInt(new IIntConsumer() {
+				@Override
+				public void accept(int value) {
+					h[0] += Fingerprints.mix(value);
+				}
+			});
+			fingerprint = Fingerprints.combine(h[0], size());
+			fingerprinted = true;
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * returns a canonical representation of this set: equal sets of the same {@link IDType} will be the very same
+	 * instance, such that equality checks are reduced to identity checks and duplicates are shared. A canonical
+	 * instance of a released {@link IDDictionary} won't be reused
+	 *
+	 * @return
+	 */
+	public TypedSet intern() {
+		TypedSet r = INTERNER.intern(this);
+		return r.dictionary == dictionary ? r : this;
+	}
+
+	/**
+	 * @return a primitive iterator over the elements, without boxing them
+	 */
+	public IIntIterator intIterator() {
+		final IIntIterator it = rawIntIterator();
+		if (dictionary == null)
+			return it;
+		return new IIntIterator() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public int nextInt() {
+				return dictionary.toId(it.nextInt());
+			}
+		};
+	}
+
+	/**
+	 * @return an iterator over the stored values, i.e. ordinals in case of a {@link #dictionary}
+	 */
+	private IIntIterator rawIntIterator() {
+		if (wrappee instanceof IIntSet)
+			return ((IIntSet) wrappee).intIterator();
+		final Iterator<Integer> it = wrappee.iterator();
+		return new IIntIterator() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public int nextInt() {
+				return it.next().intValue();
+			}
+		};
+	}
+
+	/**
+	 * visits all elements, without boxing them
+	 *
+	 * @param consumer
+	 */
+	public void forEachInt(IIntConsumer consumer) {
+		if (dictionary != null) {
+			for (IIntIterator it = intIterator(); it.hasNext();)
+				consumer.accept(it.nextInt());
+			return;
+		}
+		if (wrappee instanceof IIntSet) {
+			((IIntSet) wrappee).forEachInt(consumer);
+			return;
+		}
+		for (Integer v : wrappee)
+			consumer.accept(v.intValue());
+	}
+
+	/**
+	 * @return the elements as primitive array
+	 */
+	public int[] toIntArray() {
+		int[] r = toRawArray();
+		if (dictionary != null)
+			for (int i = 0; i < r.length; ++i)
+				r[i] = dictionary.toId(r[i]);
+		return r;
+	}
+
+	public boolean contains(int v) {
+		if (dictionary != null) {
+			v = dictionary.toOrdinal(v);
+			if (v < 0)
+				return false;
+		}
+		return containsRaw(v);
+	}
+
+	/**
+	 * @param v
+	 *            a stored value, i.e. an ordinal in case of a {@link #dictionary}
+	 * @return whether the stored values contain the given one
+	 */
+	boolean containsRaw(int v) {
+		if (wrappee instanceof IIntSet)
+			return ((IIntSet) wrappee).contains(v);
+		return wrappee.contains(v);
+	}
+
+	/**
+	 * @return the ascending sorted stored values, i.e. ordinals in case of a {@link #dictionary}
+	 */
+	int[] toRawArray() {
+		if (wrappee instanceof IIntSet)
+			return ((IIntSet) wrappee).toIntArray();
+		int[] r = new int[wrappee.size()];
+		int i = 0;
+		for (Integer v : wrappee)
+			r[i++] = v.intValue();
+		Arrays.sort(r);
+		return r;
+	}
+
+	/**
+	 * @param ordinals
+	 *            ascending sorted ordinals of the {@link #getDictionary()}, will be owned by the result
+	 * @return a set of the given ordinals of the same type, represented as lightweight view of this set if they are a
+	 *         subset of it, e.g. for the groups of a split
+	 */
+	public TypedSet createSubset(int[] ordinals) {
+		Preconditions.checkState(dictionary != null, "no ordinal space");
+		return new TypedSet(SetRepresentations.create(ordinals, wrappee), idType, dictionary);
+	}
+
+	/**
+	 * @return the word aligned bitmap representation of this set in the space of the {@link #getDictionary()}, not to
+	 *         be modified
+	 */
+	long[] toWords() {
+		return IntSetKernels.toWords(wrappee);
 	}
 
 	@Override
 	public Object[] toArray() {
+		if (dictionary != null)
+			return super.toArray();
 		return wrappee.toArray();
 	}
 
 	@Override
 	public <T> T[] toArray(T[] a) {
+		if (dictionary != null)
+			return super.toArray(a);
 		return wrappee.toArray(a);
 	}
 
 	@Override
 	public boolean containsAll(Collection<?> c) {
+		if (dictionary != null)
+			return super.containsAll(c);
 		return wrappee.containsAll(c);
 	}
 
@@ -85,30 +311,75 @@ public final class TypedSet extends AbstractSet<Integer> {
 	 * @return
 	 */
 	public final TypedSet intersect(TypedSet that) {
+		if (this == that)
+			return this;
 		if (this.isEmpty()) // return empty
 			return this;
 		if (that.isEmpty())
 			return that;
 		if (!Objects.equals(this.idType, that.idType)) // not matching id types returning empty set
 			return new TypedSet(Collections.<Integer> emptySet(), idType);
+		if (this.dictionary != that.dictionary)
+			return intersectMixed(that);
+
+		final long[] wa = IntSetKernels.words(this.wrappee);
+		final long[] wb = IntSetKernels.words(that.wrappee);
+		if (wa != null && wb != null)
+			return intersectResult(ImmutableBitSetSet.and(wa, wb));
+		if (this.wrappee instanceof RoaringSet && that.wrappee instanceof RoaringSet)
+			return intersectResult(RoaringSet.and((RoaringSet) this.wrappee, (RoaringSet) that.wrappee));
+		if (this.wrappee instanceof SortedIntSet && that.wrappee instanceof SortedIntSet)
+			return intersectResult(SortedIntSet.and((SortedIntSet) this.wrappee, (SortedIntSet) that.wrappee));
+		if (this.wrappee instanceof IIntSet && that.wrappee instanceof IIntSet)
+			return intersectResult(IntSetKernels.and((IIntSet) this.wrappee, (IIntSet) that.wrappee));
+
+		return intersectResult(ImmutableSet.copyOf(intersectImpl(that)));
+	}
 
-		if (this.wrappee instanceof BitSetSet)
-			return intersection((BitSetSet) wrappee, that);
-		if (that.wrappee instanceof BitSetSet)
-			return intersection((BitSetSet) that.wrappee, this);
-
-		Set<Integer> r = ImmutableSet.copyOf(intersectImpl(that));
+	private TypedSet intersectResult(Set<Integer> r) {
 		if (r.size() == this.size()) // all shared
 			return this;
-		return new TypedSet(r, idType);
+		return new TypedSet(r, idType, dictionary);
+	}
+
+	/**
+	 * intersection of sets of different dictionaries by iterating the smaller one and probing the other one, the result
+	 * will contain the ids directly
+	 */
+	private TypedSet intersectMixed(TypedSet that) {
+		TypedSet small = this.size() <= that.size() ? this : that;
+		TypedSet large = small == this ? that : this;
+		int[] r = new int[small.size()];
+		int k = 0;
+		for (IIntIterator it = small.intIterator(); it.hasNext();) {
+			int v = it.nextInt();
+			if (large.contains(v))
+				r[k++] = v;
+		}
+		if (k == this.size())
+			return this;
+		return new TypedSet(SortedIntSet.copyOf(r, k), idType);
+	}
+
+	/**
+	 * number of shared ids of sets of different dictionaries
+	 */
+	private int andMixed(TypedSet that) {
+		TypedSet small = this.size() <= that.size() ? this : that;
+		TypedSet large = small == this ? that : this;
+		int r = 0;
+		for (IIntIterator it = small.intIterator(); it.hasNext();)
+			if (large.contains(it.nextInt()))
+				r++;
+		return r;
 	}
 
 	private Set<Integer> intersectImpl(TypedSet that) {
 		Set<Integer> r;
-		if (this.size() < that.size()) { // smaller at the beginning
-			r = Sets.intersection(that.wrappee, this.wrappee);
-		} else
+		if (this.size() < that.size()) { // smaller at the beginning, as it will be iterated
 			r = Sets.intersection(this.wrappee, that.wrappee);
+		} else
+			r = Sets.intersection(that.wrappee, this.wrappee);
 		return r;
 	}
 
@@ -120,53 +391,106 @@ public final class TypedSet extends AbstractSet<Integer> {
 	 * @return
 	 */
 	public int and(TypedSet that) {
+		if (this == that)
+			return size();
 		if (this.isEmpty()) // return empty
 			return 0;
 		if (that.isEmpty())
 			return 0;
 		if (!Objects.equals(this.idType, that.idType)) // not matching id types returning empty set
 			return 0;
-		if (this.wrappee instanceof BitSetSet) {
-			return and((BitSetSet) this.wrappee, that);
+		if (this.dictionary != that.dictionary)
+			return andMixed(that);
+		return IntSetKernels.andCardinality(this.wrappee, that.wrappee);
+	}
+
+	/**
+	 * return the number of items shared by all three sets, without materializing any intermediate intersection
+	 *
+	 * @param b
+	 * @param c
+	 * @return
+	 */
+	public int and(TypedSet b, TypedSet c) {
+		if (this.isEmpty() || b.isEmpty() || c.isEmpty())
+			return 0;
+		if (!Objects.equals(this.idType, b.idType) || !Objects.equals(this.idType, c.idType))
+			return 0;
+		if (this.dictionary == b.dictionary && this.dictionary == c.dictionary)
+			return IntSetKernels.andCardinality(this.wrappee, b.wrappee, c.wrappee);
+		// different id spaces: iterate the smallest one and probe the others with translated ids
+		TypedSet a = this;
+		if (b.size() < a.size()) {
+			TypedSet t = a;
+			a = b;
+			b = t;
 		}
-		if (that.wrappee instanceof BitSetSet)
-			return and((BitSetSet) that.wrappee, this);
-		return intersectImpl(that).size();
+		if (c.size() < a.size()) {
+			TypedSet t = a;
+			a = c;
+			c = t;
+		}
+		int r = 0;
+		for (IIntIterator it = a.intIterator(); it.hasNext();) {
+			int v = it.nextInt();
+			if (b.contains(v) && c.contains(v))
+				r++;
+		}
+		return r;
 	}
 
 	public TypedSet union(TypedSet that) {
+		if (this == that)
+			return this;
 		if (this.isEmpty()) // return empty
 			return that;
 		if (that.isEmpty())
 			return this;
 		if (!Objects.equals(this.idType, that.idType)) // not matching id types returning empty set
 			return new TypedSet(Collections.<Integer> emptySet(), idType);
-		if (this.wrappee instanceof BitSetSet)
-			return union((BitSetSet) wrappee, that);
-		if (that.wrappee instanceof BitSetSet)
-			return union((BitSetSet) that.wrappee, this);
+		if (this.dictionary != that.dictionary) {
+			int[] a = this.toIntArray();
+			int[] b = that.toIntArray();
+			int[] r = Arrays.copyOf(a, a.length + b.length);
+			System.arraycopy(b, 0, r, a.length, b.length);
+			return unionResult(that, SortedIntSet.copyOf(r, r.length), null);
+		}
+		final long[] wa = IntSetKernels.words(this.wrappee);
+		final long[] wb = IntSetKernels.words(that.wrappee);
+		if (wa != null && wb != null)
+			return new TypedSet(ImmutableBitSetSet.or(wa, wb), idType, dictionary);
+		if (this.wrappee instanceof RoaringSet && that.wrappee instanceof RoaringSet)
+			return new TypedSet(RoaringSet.or((RoaringSet) this.wrappee, (RoaringSet) that.wrappee), idType,
+					dictionary);
+		if (this.wrappee instanceof SortedIntSet && that.wrappee instanceof SortedIntSet)
+			return new TypedSet(SortedIntSet.or((SortedIntSet) this.wrappee, (SortedIntSet) that.wrappee), idType,
+					dictionary);
+		if (this.wrappee instanceof IIntSet && that.wrappee instanceof IIntSet)
+			return new TypedSet(IntSetKernels.or((IIntSet) this.wrappee, (IIntSet) that.wrappee), idType, dictionary);
+
+		return unionResult(that, ImmutableSet.copyOf(unionImpl(that)), dictionary);
+	}
 
-		Set<Integer> r = ImmutableSet.copyOf(unionImpl(that));
+	private TypedSet unionResult(TypedSet that, Set<Integer> r, IDDictionary dictionary) {
 		if (r.size() == this.size()) // all shared
 			return this;
 		else if (r.size() == that.size()) // all shared in b
 			return that;
-		return new TypedSet(r, idType);
+		return new TypedSet(r, idType, dictionary);
 	}
 
 	public int or(TypedSet that) {
+		if (this == that)
+			return size();
 		if (this.isEmpty()) // return empty
 			return that.size();
-		if (this.isEmpty())
-			return that.size();
+		if (that.isEmpty())
+			return this.size();
 		if (!Objects.equals(this.idType, that.idType)) // not matching id types returning empty set
 			return 0;
-		if (this.wrappee instanceof BitSetSet) {
-			return or((BitSetSet) this.wrappee, that);
-		}
-		if (that.wrappee instanceof BitSetSet)
-			return or((BitSetSet) that.wrappee, this);
-		return unionImpl(that).size();
+		if (this.dictionary != that.dictionary)
+			return this.size() + that.size() - andMixed(that);
+		return IntSetKernels.orCardinality(this.wrappee, that.wrappee);
 	}
 
 	private Set<Integer> unionImpl(TypedSet that) {
@@ -179,71 +503,25 @@ public final class TypedSet extends AbstractSet<Integer> {
 	}
 
 	public int without(TypedSet that) {
+		if (this == that)
+			return 0;
 		if (this.isEmpty()) // return empty
 			return 0;
 		if (that.isEmpty())
-			return that.size();
+			return this.size();
 		if (!Objects.equals(this.idType, that.idType)) // not matching id types
 			return this.size();
-		if (this.wrappee instanceof BitSetSet) {
-			return without((BitSetSet) this.wrappee, that.wrappee);
-		}
-		return Sets.difference(this.wrappee, that.wrappee).size();
-	}
-
-	public static TypedSet intersection(BitSetSet a, TypedSet b) {
-		if (b.wrappee instanceof BitSetSet) {
-			BitSet clone = (BitSet) a.getBitSet().clone();
-			clone.and(((BitSetSet) b.wrappee).getBitSet());
-			return new TypedSet(new BitSetSet(clone), b.idType);
-		}
-		return new TypedSet(ImmutableSet.copyOf(Sets.intersection(b, a)), b.idType); // as the predicate is: in the
-																						// second argument
-	}
-
-	private static TypedSet union(BitSetSet a, TypedSet b) {
-		if (b.wrappee instanceof BitSetSet) {
-			BitSet clone = (BitSet) a.getBitSet().clone();
-			clone.or(((BitSetSet) b.wrappee).getBitSet());
-			return new TypedSet(new BitSetSet(clone), b.idType);
-		}
-		return new TypedSet(ImmutableSet.copyOf(Sets.union(b, a)), b.idType); // as the predicate is: in the second
-																				// argument
-	}
-
-	private static int and(BitSetSet a, Set<Integer> b) {
-		if (b instanceof BitSetSet) {
-			BitSet clone = (BitSet) a.getBitSet().clone();
-			clone.and(((BitSetSet) b).getBitSet());
-			return clone.cardinality();
-		}
-		return Sets.intersection(b, a).size(); // as the predicate is: in the second argument
-	}
-
-	private static int or(BitSetSet a, Set<Integer> b) {
-		if (b instanceof BitSetSet) {
-			BitSet clone = (BitSet) a.getBitSet().clone();
-			clone.or(((BitSetSet) b).getBitSet());
-			return clone.cardinality();
-		}
-		return Sets.union(b, a).size(); // as the predicate is: in the second argument
-	}
-
-	private static int without(BitSetSet a, Set<Integer> b) {
-		if (b instanceof BitSetSet) {
-			BitSet clone = (BitSet) a.getBitSet().clone();
-			clone.andNot(((BitSetSet) b).getBitSet());
-			return clone.cardinality();
-		}
-		return Sets.difference(a, b).size(); // as the predicate is: in the second argument
+		if (this.dictionary != that.dictionary)
+			return this.size() - andMixed(that);
+		return IntSetKernels.andNotCardinality(this.wrappee, that.wrappee);
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
-		int result = super.hashCode();
-		result = prime * result + ((idType == null) ? 0 : idType.hashCode());
-		result = prime * result + ((wrappee == null) ? 0 : wrappee.hashCode());
+		long f = getFingerprint();
+		int result = (int) (f ^ (f >>> 32));
+		result = prime * result + idType.hashCode();
 		return result;
 	}
 
@@ -251,12 +529,16 @@ public final class TypedSet extends AbstractSet<Integer> {
 	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
-		if (!super.equals(obj))
-			return false;
-		if (getClass() != obj.getClass())
+		if (obj == null || getClass() != obj.getClass())
 			return false;
 		TypedSet other = (TypedSet) obj;
-		return Objects.equals(idType, other.idType) && Objects.equals(wrappee, other.wrappee);
+		if (size() != other.size() || !Objects.equals(idType, other.idType))
+			return false;
+		if (getFingerprint() != other.getFingerprint())
+			return false;
+		if (this.dictionary == other.dictionary && this.wrappee.getClass() == other.wrappee.getClass())
+			return this.wrappee.equals(other.wrappee);
+		return and(other) == size();
 	}
 
 	@Override
@@ -264,8 +546,8 @@ public final class TypedSet extends AbstractSet<Integer> {
 		StringBuilder builder = new StringBuilder();
 		builder.append("TypedSet [idType=");
 		builder.append(idType);
-		builder.append(", wrappee=");
-		builder.append(wrappee);
+		builder.append(", ids=");
+		builder.append(dictionary == null ? wrappee : ImmutableSet.copyOf(this));
 		builder.append("]");
 		return builder.toString();
 	}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.api.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.caleydo.view.crossword.internal.util.IDDictionary;
+
+/**
+ * the difference between two versions of a {@link TypedSet}, i.e. the added and removed elements. Can be used to
+ * update derived values like intersection sizes in O(delta) instead of recomputing them from scratch
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class TypedSetDelta {
+	/**
+	 * up to this fraction of changed elements relative to the new set, applying the delta is assumed to be cheaper
+	 * than a full recomputation
+	 */
+	private static final float SMALL_FRACTION = 0.125f;
+
+	private final TypedSet from;
+	private final TypedSet to;
+	/**
+	 * the added and removed elements as stored values, i.e. in the space of the {@link IDDictionary}
+	 */
+	private final int[] added;
+	private final int[] removed;
+
+	private TypedSetDelta(TypedSet from, TypedSet to, int[] added, int[] removed) {
+		this.from = from;
+		this.to = to;
+		this.added = added;
+		this.removed = removed;
+	}
+
+	/**
+	 * computes the delta between the two versions of a set
+	 *
+	 * @param from
+	 *            the old version
+	 * @param to
+	 *            the new version
+	 * @return the delta or <code>null</code> if the two versions are not comparable, i.e. are of different id types or
+	 *         dictionaries
+	 */
+	public static TypedSetDelta between(TypedSet from, TypedSet to) {
+		if (from == null || to == null || !Objects.equals(from.getIdType(), to.getIdType())
+				|| from.getDictionary() != to.getDictionary())
+			return null;
+		if (from == to)
+			return new TypedSetDelta(from, to, new int[0], new int[0]);
+		int[] a = from.toRawArray();
+		int[] b = to.toRawArray();
+		int[] added = new int[b.length];
+		int[] removed = new int[a.length];
+		int na = 0, nr = 0;
+		int i = 0, j = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j])
+				removed[nr++] = a[i++];
+			else if (a[i] > b[j])
+				added[na++] = b[j++];
+			else {
+				i++;
+				j++;
+			}
+		}
+		while (i < a.length)
+			removed[nr++] = a[i++];
+		while (j < b.length)
+			added[na++] = b[j++];
+		return new TypedSetDelta(from, to, Arrays.copyOf(added, na), Arrays.copyOf(removed, nr));
+	}
+
+	/**
+	 * @return the old version
+	 */
+	public TypedSet getFrom() {
+		return from;
+	}
+
+	/**
+	 * @return the new version
+	 */
+	public TypedSet getTo() {
+		return to;
+	}
+
+	/**
+	 * @return whether nothing changed
+	 */
+	public boolean isEmpty() {
+		return added.length == 0 && removed.length == 0;
+	}
+
+	/**
+	 * @return the number of changed elements
+	 */
+	public int size() {
+		return added.length + removed.length;
+	}
+
+	/**
+	 * @return whether applying this delta is cheaper than recomputing derived values
+	 */
+	public boolean isSmall() {
+		return size() <= Math.max(1, to.size()) * SMALL_FRACTION;
+	}
+
+	/**
+	 * @return whether this delta can be applied to derived values of the given set, i.e. it uses the same dictionary
+	 */
+	public boolean isCompatible(TypedSet other) {
+		return Objects.equals(to.getIdType(), other.getIdType()) && to.getDictionary() == other.getDictionary();
+	}
+
+	/**
+	 * computes the new number of shared elements with the given set in O(delta)
+	 *
+	 * @param other
+	 *            a compatible set, see {@link #isCompatible(TypedSet)}
+	 * @param oldShared
+	 *            the number of shared elements between {@link #getFrom()} and other
+	 * @return the number of shared elements between {@link #getTo()} and other
+	 */
+	public int and(TypedSet other, int oldShared) {
+		int r = oldShared;
+		for (int v : added)
+			if (other.containsRaw(v))
+				r++;
+		for (int v : removed)
+			if (other.containsRaw(v))
+				r--;
+		return r;
+	}
+}
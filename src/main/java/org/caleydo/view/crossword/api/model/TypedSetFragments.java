@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.api.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.caleydo.core.id.IDType;
+import org.caleydo.view.crossword.internal.util.IDDictionary;
+import org.caleydo.view.crossword.internal.util.ImmutableBitSetSet;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * the overlap fragments (UpSet-style regions) of k {@link TypedSet}s of the same {@link IDType}.
+ *
+ * a fragment is identified by a bit mask of the sets it belongs to and contains all ids that are in exactly these sets.
+ * All non empty fragment cardinalities are computed in a single pass over the word aligned bitmaps, the ids of a
+ * fragment are materialized on demand
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class TypedSetFragments {
+	/**
+	 * maximal number of sets, as a fragment is identified by an int mask
+	 */
+	public static final int MAX_SETS = 31;
+	/**
+	 * up to this number of sets, the fragment counts are accumulated in a dense array
+	 */
+	private static final int DENSE_SETS = 16;
+
+	private final IDType idType;
+	private final IDDictionary dictionary;
+	private final List<TypedSet> sets;
+	private final long[][] words;
+
+	/**
+	 * sorted masks of the non empty fragments and their cardinalities
+	 */
+	private final int[] masks;
+	private final int[] cardinalities;
+
+	private TypedSetFragments(IDType idType, IDDictionary dictionary, List<TypedSet> sets, long[][] words,
+			int[] masks, int[] cardinalities) {
+		this.idType = idType;
+		this.dictionary = dictionary;
+		this.sets = sets;
+		this.words = words;
+		this.masks = masks;
+		this.cardinalities = cardinalities;
+	}
+
+	/**
+	 * computes the fragments of the given sets
+	 *
+	 * @param idType
+	 *            the common id type
+	 * @param sets
+	 *            at most {@link #MAX_SETS} sets of the given id type, sets of a different {@link IDDictionary} than
+	 *            the first dictionary based one are remapped into its ordinal space
+	 * @return
+	 */
+	public static TypedSetFragments of(IDType idType, List<TypedSet> sets) {
+		final int k = sets.size();
+		Preconditions.checkArgument(k <= MAX_SETS, "too many sets: %s", k);
+		IDDictionary dictionary = null;
+		for (int j = 0; j < k && dictionary == null; ++j)
+			dictionary = sets.get(j).getDictionary();
+		long[][] words = new long[k][];
+		int length = 0;
+		for (int j = 0; j < k; ++j) {
+			TypedSet set = sets.get(j);
+			Preconditions.checkArgument(idType.equals(set.getIdType()), "id type mismatch");
+			if (set.getDictionary() == dictionary)
+				words[j] = set.toWords();
+			else // e.g. bound to a dictionary that was released and acquired again in the meantime
+				words[j] = toWords(dictionary.encode(set));
+			length = Math.max(length, words[j].length);
+		}
+
+		final int[] dense = k <= DENSE_SETS ? new int[1 << k] : null;
+		final Map<Integer, int[]> sparse = dense == null ? new HashMap<Integer, int[]>() : null;
+
+		// partition refinement per word: each part is a group of bits with the same membership mask
+		final long[] parts = new long[64];
+		final int[] partMasks = new int[64];
+		for (int i = 0; i < length; ++i) {
+			long all = 0;
+			for (int j = 0; j < k; ++j)
+				if (i < words[j].length)
+					all |= words[j][i];
+			if (all == 0)
+				continue;
+			int n = 1;
+			parts[0] = all;
+			partMasks[0] = 0;
+			for (int j = 0; j < k; ++j) {
+				if (i >= words[j].length)
+					continue;
+				final long w = words[j][i];
+				if (w == 0)
+					continue;
+				final int bit = 1 << j;
+				for (int p = 0, pn = n; p < pn; ++p) {
+					long in = parts[p] & w;
+					if (in == 0)
+						continue;
+					long out = parts[p] & ~w;
+					if (out != 0) { // split
+						parts[n] = out;
+						partMasks[n++] = partMasks[p];
+					}
+					parts[p] = in;
+					partMasks[p] |= bit;
+				}
+			}
+			for (int p = 0; p < n; ++p) {
+				int c = Long.bitCount(parts[p]);
+				if (dense != null)
+					dense[partMasks[p]] += c;
+				else {
+					int[] v = sparse.get(partMasks[p]);
+					if (v == null)
+						sparse.put(partMasks[p], new int[] { c });
+					else
+						v[0] += c;
+				}
+			}
+		}
+
+		int[] masks;
+		int[] cardinalities;
+		if (dense != null) {
+			int size = 0;
+			for (int c : dense)
+				if (c > 0)
+					size++;
+			masks = new int[size];
+			cardinalities = new int[size];
+			int f = 0;
+			for (int m = 0; m < dense.length; ++m)
+				if (dense[m] > 0) {
+					masks[f] = m;
+					cardinalities[f++] = dense[m];
+				}
+		} else {
+			masks = new int[sparse.size()];
+			int f = 0;
+			for (Integer m : sparse.keySet())
+				masks[f++] = m.intValue();
+			Arrays.sort(masks);
+			cardinalities = new int[masks.length];
+			for (f = 0; f < masks.length; ++f)
+				cardinalities[f] = sparse.get(masks[f])[0];
+		}
+		return new TypedSetFragments(idType, dictionary, ImmutableList.copyOf(sets), words, masks, cardinalities);
+	}
+
+	private static long[] toWords(int[] sorted) {
+		if (sorted.length == 0)
+			return new long[0];
+		long[] r = new long[(sorted[sorted.length - 1] >>> 6) + 1];
+		for (int v : sorted)
+			r[v >>> 6] |= 1L << v;
+		return r;
+	}
+
+	/**
+	 * @return the idType, see {@link #idType}
+	 */
+	public IDType getIdType() {
+		return idType;
+	}
+
+	/**
+	 * @return the sets, see {@link #sets}
+	 */
+	public List<TypedSet> getSets() {
+		return sets;
+	}
+
+	/**
+	 * @param set
+	 * @return the index of the given set (by identity) or -1 if it is not part of these fragments
+	 */
+	public int indexOf(TypedSet set) {
+		for (int j = 0; j < sets.size(); ++j)
+			if (sets.get(j) == set)
+				return j;
+		return -1;
+	}
+
+	/**
+	 * @return the mask of the given sets (by identity) or 0 if any of them is not part of these fragments
+	 */
+	public int maskOf(TypedSet... sets) {
+		int mask = 0;
+		for (TypedSet set : sets) {
+			int j = indexOf(set);
+			if (j < 0)
+				return 0;
+			mask |= 1 << j;
+		}
+		return mask;
+	}
+
+	/**
+	 * @return the number of non empty fragments
+	 */
+	public int size() {
+		return masks.length;
+	}
+
+	/**
+	 * @return the mask of the i-th non empty fragment
+	 */
+	public int getMask(int i) {
+		return masks[i];
+	}
+
+	/**
+	 * @return the cardinality of the i-th non empty fragment
+	 */
+	public int getCardinality(int i) {
+		return cardinalities[i];
+	}
+
+	/**
+	 * @param mask
+	 * @return the number of ids that are in exactly the sets of the given mask
+	 */
+	public int getExclusiveCardinality(int mask) {
+		int i = Arrays.binarySearch(masks, mask);
+		return i < 0 ? 0 : cardinalities[i];
+	}
+
+	/**
+	 * @param mask
+	 * @return the number of ids that are in all sets of the given mask, i.e. the size of the k-way intersection
+	 */
+	public int getSharedCardinality(int mask) {
+		int r = 0;
+		for (int i = 0; i < masks.length; ++i)
+			if ((masks[i] & mask) == mask)
+				r += cardinalities[i];
+		return r;
+	}
+
+	/**
+	 * materializes the ids that are in exactly the sets of the given mask
+	 *
+	 * @param mask
+	 * @return
+	 */
+	public TypedSet getExclusive(int mask) {
+		return materialize(mask, true);
+	}
+
+	/**
+	 * materializes the ids that are in all sets of the given mask, i.e. the k-way intersection
+	 *
+	 * @param mask
+	 * @return
+	 */
+	public TypedSet getShared(int mask) {
+		return materialize(mask, false);
+	}
+
+	private TypedSet materialize(int mask, boolean exclusive) {
+		// like the cardinalities, masks referring to unknown sets are empty
+		if (mask == 0 || (mask & ~((1 << words.length) - 1)) != 0)
+			return new TypedSet(ImmutableBitSetSet.EMPTY, idType, dictionary);
+		int length = Integer.MAX_VALUE;
+		for (int j = 0; j < words.length; ++j)
+			if ((mask & (1 << j)) != 0)
+				length = Math.min(length, words[j].length);
+		long[] r = new long[length];
+		for (int i = 0; i < length; ++i) {
+			long in = -1L;
+			long out = 0;
+			for (int j = 0; j < words.length; ++j) {
+				if ((mask & (1 << j)) != 0)
+					in &= words[j][i];
+				else if (exclusive && i < words[j].length)
+					out |= words[j][i];
+			}
+			r[i] = in & ~out;
+		}
+		return new TypedSet(ImmutableBitSetSet.of(BitSet.valueOf(r)), idType, dictionary);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder("TypedSetFragments [idType=").append(idType).append(", fragments={");
+		for (int i = 0; i < masks.length; ++i) {
+			if (i > 0)
+				b.append(", ");
+			b.append(Integer.toBinaryString(masks[i])).append('=').append(cardinalities[i]);
+		}
+		return b.append("}]").toString();
+	}
+}
@@ -14,18 +14,32 @@ import gleem.linalg.Vec2f;
 import gleem.linalg.Vec4f;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.caleydo.core.data.collection.EDimension;
 import org.caleydo.core.data.collection.table.Table;
 import org.caleydo.core.data.datadomain.ATableBasedDataDomain;
 import org.caleydo.core.data.perspective.table.TablePerspective;
 import org.caleydo.core.data.perspective.variable.Perspective;
+import org.caleydo.core.data.perspective.variable.PerspectiveInitializationData;
+import org.caleydo.core.data.virtualarray.VirtualArray;
 import org.caleydo.core.data.virtualarray.group.Group;
 import org.caleydo.core.data.virtualarray.group.GroupList;
+import org.caleydo.core.id.IDCategory;
 import org.caleydo.core.id.IDType;
 import org.caleydo.core.view.opengl.layout2.GLElement;
 import org.caleydo.core.view.opengl.layout2.GLElementAccessor;
@@ -40,29 +54,39 @@ import org.caleydo.view.crossword.api.model.ConnectorStrategies;
 import org.caleydo.view.crossword.api.model.PerspectiveMetaData;
 import org.caleydo.view.crossword.api.model.TablePerspectiveMetaData;
 import org.caleydo.view.crossword.api.model.TypedSet;
+import org.caleydo.view.crossword.api.model.TypedSetDelta;
+import org.caleydo.view.crossword.api.model.TypedSetFragments;
 import org.caleydo.view.crossword.api.ui.layout.EEdgeType;
 import org.caleydo.view.crossword.api.ui.layout.IGraphEdge;
 import org.caleydo.view.crossword.api.ui.layout.IGraphVertex;
 import org.caleydo.view.crossword.api.ui.layout.IVertexConnector;
 import org.caleydo.view.crossword.internal.CrosswordView;
+import org.caleydo.view.crossword.internal.concurrent.CrosswordExecutor;
 import org.caleydo.view.crossword.internal.ui.CrosswordBandLayer;
 import org.caleydo.view.crossword.internal.ui.CrosswordElement;
 import org.caleydo.view.crossword.internal.ui.CrosswordLayoutInfo;
 import org.caleydo.view.crossword.internal.ui.layout.DefaultGraphLayout;
+import org.caleydo.view.crossword.internal.util.CompactGraph;
+import org.caleydo.view.crossword.internal.util.IDDictionary;
 import org.caleydo.view.crossword.spi.config.ElementConfig;
 import org.caleydo.view.crossword.spi.config.MultiConfig;
 import org.caleydo.view.crossword.spi.model.IBandRenderer;
+import org.caleydo.view.crossword.spi.model.IBandRenderer.EBandMode;
 import org.caleydo.view.crossword.spi.model.IConnectorStrategy;
 import org.caleydo.view.crossword.spi.ui.layout.IGraphLayout;
 import org.caleydo.view.crossword.spi.ui.layout.IGraphLayout.GraphLayoutModel;
-import org.jgrapht.UndirectedGraph;
-import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.Pseudograph;
 
 import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 
 /**
  * crossword root element
@@ -76,7 +100,52 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 	/**
 	 * data structure for managing the elements
 	 */
-	private final UndirectedGraph<GraphVertex, GraphEdge> graph = new Pseudograph<>(GraphEdge.class);
+	private final CompactGraph<GraphVertex, GraphEdge> graph = new CompactGraph<>();
+	/**
+	 * element to vertex lookup
+	 */
+	private final Map<GLElement, GraphVertex> vertices = new IdentityHashMap<>();
+	/**
+	 * index of the vertices by the {@link IDCategory} of their ids per {@link EDimension}, for finding edge candidates
+	 */
+	private final Map<EDimension, SetMultimap<IDCategory, GraphVertex>> categoryIndex = new EnumMap<>(
+			EDimension.class);
+	{
+		for (EDimension dim : EDimension.values())
+			categoryIndex.put(dim, LinkedHashMultimap.<IDCategory, GraphVertex> create());
+	}
+
+	/**
+	 * nesting depth of {@link #beginBatch()}, while &gt; 0 edge creation and layout are deferred to the final
+	 * {@link #commitBatch()}
+	 */
+	private int batchDepth = 0;
+	/**
+	 * vertices added within the current batch, whose edges will be created on commit
+	 */
+	private final Set<GraphVertex> batchAdded = new LinkedHashSet<>();
+	/**
+	 * vertices about to be removed by {@link #removeAll(Collection)}, the sibling chain won't be bridged to them
+	 */
+	private final Set<GraphVertex> batchRemoved = Collections
+			.newSetFromMap(new IdentityHashMap<GraphVertex, Boolean>());
+	private boolean batchRelayout = false;
+
+	/**
+	 * number of edge updates, which were skipped as their inputs didn't change, and which were recomputed
+	 */
+	private long skippedEdgeUpdates = 0;
+	private long recomputedEdgeUpdates = 0;
+	/**
+	 * number of edge updates, which were derived from the split hierarchy, see {@link EStructure}
+	 */
+	private long structuralEdgeUpdates = 0;
+
+	/**
+	 * the elements aggregating the small groups of a split, see {@link #expand(CrosswordElement)}
+	 */
+	private final Map<GLElement, Aggregate> aggregates = new IdentityHashMap<>();
+
 	/**
 	 * dedicated element/layer for the bands for better caching behavior
 	 */
@@ -91,6 +160,26 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 	 */
 	private boolean alwaysShowHeader;
 
+	/**
+	 * how the bands are rendered
+	 */
+	private EBandMode bandMode;
+
+	/**
+	 * cache of the overlap fragments per {@link IDType}, just used in {@link EBandMode#FRAGMENT}
+	 */
+	private final Map<IDType, TypedSetFragments> fragments = new HashMap<>();
+
+	/**
+	 * edges whose intersection has to be recomputed, will be done in the background, see {@link #layout(int)}
+	 */
+	private final Set<GraphEdge> dirtyEdges = new LinkedHashSet<>();
+	/**
+	 * the running background computation of edge intersections
+	 */
+	private Future<List<EdgeUpdate>> pendingEdges;
+	private Set<GraphEdge> pendingEdgesSet = Collections.emptySet();
+
 	/**
 	 * result of the layout algorithm
 	 */
@@ -109,6 +198,7 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 	public CrosswordMultiElement(IGraphLayout layout, MultiConfig config) {
 		this.layout = layout;
 		this.config = config;
+		this.bandMode = config.getBandMode();
 		GLElementAccessor.setParent(bands, this);
 	}
 
@@ -138,12 +228,199 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 			elem.relayout();
 	}
 
+	/**
+	 * @return the bandMode, see {@link #bandMode}
+	 */
+	public EBandMode getBandMode() {
+		return bandMode;
+	}
+
+	/**
+	 * @param bandMode
+	 *            setter, see {@link bandMode}
+	 */
+	public void setBandMode(EBandMode bandMode) {
+		if (this.bandMode == bandMode)
+			return;
+		this.bandMode = bandMode;
+		fragments.clear();
+		bands.repaint();
+	}
+
+	/**
+	 * returns the overlap fragments of all id sets of the given {@link IDType}
+	 *
+	 * @param idType
+	 * @return the fragments or <code>null</code> if there are less than two or more than
+	 *         {@link TypedSetFragments#MAX_SETS} sets, the bands of the {@link IDType} will be rendered
+	 *         {@link EBandMode#PAIRWISE} then
+	 */
+	public TypedSetFragments getFragments(IDType idType) {
+		if (fragments.containsKey(idType))
+			return fragments.get(idType);
+		List<TypedSet> sets = new ArrayList<>();
+		Set<TypedSet> seen = Collections.newSetFromMap(new IdentityHashMap<TypedSet, Boolean>());
+		for (GraphVertex vertex : graph.vertexSet()) {
+			for (EDimension dim : EDimension.values()) {
+				TypedSet ids = vertex.getIDs(dim);
+				if (idType.equals(ids.getIdType()) && seen.add(ids))
+					sets.add(ids);
+			}
+		}
+		TypedSetFragments r = null;
+		if (sets.size() >= 2 && sets.size() <= TypedSetFragments.MAX_SETS)
+			r = TypedSetFragments.of(idType, sets);
+		fragments.put(idType, r);
+		return r;
+	}
+
 	@Override
 	public void layout(int deltaTimeMs) {
+		applyPendingEdges();
 		super.layout(deltaTimeMs);
 		bands.layout(deltaTimeMs);
 		for (GraphVertex vertex : graph.vertexSet())
 			vertex.asElement().layout(deltaTimeMs);
+		scheduleDirtyEdges(); // including the ones of the elements
+	}
+
+	/**
+	 * @return the number of edge updates, which were skipped as the ids of both ends didn't change
+	 */
+	public long getSkippedEdgeUpdates() {
+		return skippedEdgeUpdates;
+	}
+
+	/**
+	 * @return the number of edge updates, which recomputed the intersection and connectors
+	 */
+	public long getRecomputedEdgeUpdates() {
+		return recomputedEdgeUpdates;
+	}
+
+	/**
+	 * @return the number of edge updates, which were derived from the split hierarchy without any set operation
+	 */
+	public long getStructuralEdgeUpdates() {
+		return structuralEdgeUpdates;
+	}
+
+	/**
+	 * marks the given edge for recomputation in the background, meanwhile its previous state will be shown
+	 *
+	 * @param edge
+	 */
+	private void scheduleUpdate(GraphEdge edge) {
+		dirtyEdges.add(edge);
+	}
+
+	/**
+	 * submits the dirty edges to the background, superseded computations are cancelled
+	 */
+	private void scheduleDirtyEdges() {
+		if (dirtyEdges.isEmpty())
+			return;
+		if (pendingEdges != null) {
+			if (Collections.disjoint(dirtyEdges, pendingEdgesSet))
+				return; // wait till the running one is done
+			// superseded, merge and restart
+			CrosswordExecutor.cancel(pendingEdges);
+			dirtyEdges.addAll(pendingEdgesSet);
+		}
+		final List<EdgeUpdate> updates = new ArrayList<>(dirtyEdges.size());
+		final List<GraphEdge> deferred = new ArrayList<>();
+		boolean changed = false;
+		for (Iterator<GraphEdge> it = dirtyEdges.iterator(); it.hasNext();) {
+			GraphEdge edge = it.next();
+			if (!graph.containsEdge(edge)) {
+				it.remove();
+				continue;
+			}
+			if (edge.isUpToDate()) {
+				skippedEdgeUpdates++;
+				it.remove();
+				continue;
+			}
+			TypedSet sourceIDs = edge.getSourceIDs();
+			TypedSet targetIDs = edge.getTargetIDs();
+			if (edge.isStructurallyPending(sourceIDs, targetIDs)) {
+				// one end is still converting, reconsider it in the next frame
+				deferred.add(edge);
+				it.remove();
+				continue;
+			}
+			TypedSet known = edge.getStructuralIntersection(sourceIDs, targetIDs);
+			if (known != null) { // derived in O(1) on this thread
+				changed |= edge.apply(sourceIDs, targetIDs, known.size());
+				edge.markUpToDate();
+				structuralEdgeUpdates++;
+				it.remove();
+				continue;
+			}
+			updates.add(new EdgeUpdate(edge));
+		}
+		if (changed) {
+			fragments.clear();
+			relayout();
+		}
+		if (updates.isEmpty()) {
+			dirtyEdges.addAll(deferred);
+			return;
+		}
+		pendingEdgesSet = ImmutableSet.copyOf(dirtyEdges);
+		dirtyEdges.clear();
+		dirtyEdges.addAll(deferred);
+		pendingEdges = CrosswordExecutor.submit(new Callable<List<EdgeUpdate>>() {
+			@Override
+			public List<EdgeUpdate> call() {
+				try {
+					// the edges are independent, the results will be merged in applyPendingEdges
+					CrosswordExecutor.invokeAll(updates);
+				} catch (InterruptedException e) {
+					return null;
+				}
+				return updates;
+			}
+		});
+	}
+
+	/**
+	 * swaps in the results of a finished background computation at once
+	 */
+	private void applyPendingEdges() {
+		if (pendingEdges == null || !pendingEdges.isDone())
+			return;
+		final Set<GraphEdge> pending = pendingEdgesSet;
+		List<EdgeUpdate> updates;
+		try {
+			updates = pendingEdges.isCancelled() ? null : pendingEdges.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw Throwables.propagate(e.getCause() == null ? e : e.getCause());
+		} finally {
+			pendingEdges = null;
+			pendingEdgesSet = Collections.emptySet();
+		}
+		if (updates == null) { // interrupted, retry
+			dirtyEdges.addAll(pending);
+			return;
+		}
+		boolean changed = false;
+		for (EdgeUpdate update : updates) {
+			GraphEdge edge = update.edge;
+			if (!graph.containsEdge(edge))
+				continue;
+			if (update.isStale()) // inputs changed in the meantime
+				scheduleUpdate(edge);
+			else {
+				changed |= edge.apply(update.sourceIDs, update.targetIDs, update.intersectionSize);
+				edge.markUpToDate();
+				recomputedEdgeUpdates++;
+			}
+		}
+		if (changed) {
+			fragments.clear();
+			relayout();
+		}
 	}
 
 	@Override
@@ -158,10 +435,64 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 		Vec2f size = getSize();
 		GLElementAccessor.asLayoutElement(bands).setBounds(0, 0, size.x(), size.y());
 
-		this.layoutInstance = layout.doLayout(graph.vertexSet(), graph.edgeSet());
+		updatePruning();
+		this.layoutInstance = layout.doLayout(graph.vertexSet(), Sets.filter(graph.edgeSet(), isVisible));
 		relayoutParent(); // trigger update of the parent for min size changes
 	}
 
+	/**
+	 * marks the insignificant {@link EEdgeType#SHARED} edges according to the {@link MultiConfig} as pruned, such that
+	 * they won't get any route. As the edges itself are kept up to date, they will be shown again as soon as their
+	 * overlap grows
+	 */
+	private void updatePruning() {
+		final int minOverlap = config.getMinBandOverlap();
+		final float minFraction = config.getMinBandOverlapFraction();
+		final int maxPerVertex = config.getMaxBandsPerVertex();
+
+		for (GraphEdge edge : graph.edgeSet()) {
+			if (edge.getType() != SHARED) {
+				edge.pruned = false;
+				continue;
+			}
+			final int size = edge.getIntersectionSize();
+			final int smaller = Math.min(edge.getSourceIDs().size(), edge.getTargetIDs().size());
+			edge.pruned = size < minOverlap || (smaller > 0 && size < minFraction * smaller);
+		}
+		if (maxPerVertex == Integer.MAX_VALUE)
+			return;
+
+		// keep just the top k of each vertex, ranked among the significant ones
+		List<GraphEdge> beyond = new ArrayList<>();
+		List<GraphEdge> candidates = new ArrayList<>();
+		for (GraphVertex vertex : graph.vertexSet()) {
+			candidates.clear();
+			for (GraphEdge edge : vertex.getEdges())
+				if (edge.getType() == SHARED && !edge.pruned)
+					candidates.add(edge);
+			if (candidates.size() <= maxPerVertex)
+				continue;
+			Collections.sort(candidates, BY_INTERSECTION_SIZE);
+			beyond.addAll(candidates.subList(maxPerVertex, candidates.size()));
+		}
+		for (GraphEdge edge : beyond)
+			edge.pruned = true;
+	}
+
+	private static final Comparator<GraphEdge> BY_INTERSECTION_SIZE = new Comparator<GraphEdge>() {
+		@Override
+		public int compare(GraphEdge o1, GraphEdge o2) {
+			return Integer.compare(o2.getIntersectionSize(), o1.getIntersectionSize());
+		}
+	};
+
+	private static final Predicate<GraphEdge> isVisible = new Predicate<GraphEdge>() {
+		@Override
+		public boolean apply(GraphEdge input) {
+			return !input.pruned;
+		}
+	};
+
 	/**
 	 * @return
 	 */
@@ -171,9 +502,14 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 
 	@Override
 	protected void takeDown() {
+		CrosswordExecutor.cancel(pendingEdges);
+		pendingEdges = null;
+		pendingEdgesSet = Collections.emptySet();
 		GLElementAccessor.takeDown(bands);
-		for (GraphVertex vertex : graph.vertexSet())
+		for (GraphVertex vertex : graph.vertexSet()) {
 			GLElementAccessor.takeDown(vertex.asElement());
+			releaseDictionaries(vertex);
+		}
 		super.takeDown();
 	}
 
@@ -181,8 +517,23 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 	protected void init(IGLElementContext context) {
 		super.init(context);
 		GLElementAccessor.init(bands, context);
-		for (GraphVertex vertex : graph.vertexSet())
+		for (GraphVertex vertex : graph.vertexSet()) {
 			GLElementAccessor.init(vertex.asElement(), context);
+			acquireDictionaries(vertex);
+		}
+	}
+
+	/**
+	 * the {@link IDDictionary}s of the categories of a vertex are held while this element is initialized
+	 */
+	private static void acquireDictionaries(GraphVertex vertex) {
+		for (EDimension dim : EDimension.values())
+			IDDictionary.acquire(vertex.getIDCategory(dim));
+	}
+
+	private static void releaseDictionaries(GraphVertex vertex) {
+		for (EDimension dim : EDimension.values())
+			IDDictionary.release(vertex.getIDCategory(dim));
 	}
 
 	private void setup(CrosswordElement child) {
@@ -206,7 +557,60 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 		GraphVertex vertex = toVertex(child);
 		if (vertex == null)
 			return false;
-		return graph.removeVertex(vertex);
+		fragments.clear();
+		batchAdded.remove(vertex);
+		for (EDimension dim : EDimension.values())
+			categoryIndex.get(dim).remove(vertex.getIDCategory(dim), vertex);
+		if (context != null)
+			releaseDictionaries(vertex);
+		vertices.remove(child);
+		aggregates.remove(child);
+		for (Iterator<Aggregate> it = aggregates.values().iterator(); it.hasNext();)
+			if (it.next().base == child) // can't be expanded anymore
+				it.remove();
+		// bridge the gap within the sibling chain, to the closest siblings which remain
+		GraphVertex prev = null, next = null;
+		EDimension siblingDim = null;
+		for (GraphEdge edge : vertex.getEdges()) {
+			if (edge.getType() != SIBLING)
+				continue;
+			siblingDim = edge.getSourceConnector().getDimension();
+			GraphVertex other = edge.getSource() == vertex ? edge.getTarget() : edge.getSource();
+			other = remainingSibling(vertex, other);
+			if (other == null)
+				continue;
+			if (prev == null)
+				prev = other;
+			else
+				next = other;
+		}
+		batchRemoved.remove(vertex);
+		boolean removed = graph.removeVertex(vertex);
+		if (prev != null && next != null)
+			addSiblingEdge(next, prev, siblingDim);
+		return removed;
+	}
+
+	/**
+	 * walks the sibling chain starting at the given vertex away from the given one, skipping the vertices that are
+	 * about to be removed
+	 *
+	 * @return the first remaining vertex or <code>null</code> if none
+	 */
+	private GraphVertex remainingSibling(GraphVertex from, GraphVertex vertex) {
+		while (vertex != null && batchRemoved.contains(vertex)) {
+			GraphVertex next = null;
+			for (GraphEdge edge : vertex.getEdges()) {
+				if (edge.getType() != SIBLING)
+					continue;
+				GraphVertex other = edge.getSource() == vertex ? edge.getTarget() : edge.getSource();
+				if (other != from)
+					next = other;
+			}
+			from = vertex;
+			vertex = next;
+		}
+		return vertex;
 	}
 
 	/**
@@ -214,36 +618,72 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 	 */
 	private void add(CrosswordElement child) {
 		GraphVertex vertex = addImpl(child);
-		createBands(vertex, ImmutableSet.of(child));
+		if (batchDepth > 0)
+			batchAdded.add(vertex);
+		else
+			createBands(vertex, ImmutableSet.of(child));
 	}
 
 	private GraphVertex addImpl(CrosswordElement child) {
 		setup(child);
 		final GraphVertex vertex = new GraphVertex(child);
 		graph.addVertex(vertex);
-		relayout();
+		vertices.put(child, vertex);
+		for (EDimension dim : EDimension.values())
+			categoryIndex.get(dim).put(vertex.getIDCategory(dim), vertex);
+		if (context != null)
+			acquireDictionaries(vertex);
+		fragments.clear();
+		relayoutBatched();
 		return vertex;
 	}
 
-	private void createBands(GraphVertex child, Set<CrosswordElement> ignores) {
-		final TablePerspective tablePerspective = child.getTablePerspective();
-		final IDType recIDType = tablePerspective.getRecordPerspective().getIdType();
-		final IDType dimIDType = tablePerspective.getDimensionPerspective().getIdType();
+	/**
+	 * starts a batch of add, remove and split operations, which defers the edge creation and layout till the matching
+	 * {@link #commitBatch()}. Batches can be nested.
+	 */
+	public void beginBatch() {
+		batchDepth++;
+	}
 
-		for (GraphVertex other : graph.vertexSet()) {
-			if (ignores.contains(other.asElement()))
-				continue;
-			final TablePerspective tablePerspective2 = child.getTablePerspective();
-			final IDType recIDType2 = tablePerspective2.getRecordPerspective().getIdType();
-			final IDType dimIDType2 = tablePerspective2.getDimensionPerspective().getIdType();
-			if (recIDType.resolvesTo(recIDType2))
-				addEdge(child, other, SHARED, connect(RECORD), connect(RECORD));
-			if (dimIDType.resolvesTo(recIDType2))
-				addEdge(child, other, SHARED, connect(DIMENSION), connect(RECORD));
-			if (recIDType.resolvesTo(dimIDType2))
-				addEdge(child, other, SHARED, connect(RECORD), connect(DIMENSION));
-			if (dimIDType.resolvesTo(dimIDType2))
-				addEdge(child, other, SHARED, connect(DIMENSION), connect(DIMENSION));
+	/**
+	 * ends the current batch, on the outermost one the edges of all added elements will be created in one pass and a
+	 * single relayout triggered
+	 */
+	public void commitBatch() {
+		Preconditions.checkState(batchDepth > 0, "no open batch");
+		if (--batchDepth > 0)
+			return;
+		// the not yet processed ones are skipped by createBands, so every pair is connected once
+		for (GraphVertex vertex : ImmutableList.copyOf(batchAdded)) {
+			batchAdded.remove(vertex);
+			createBands(vertex, Collections.<CrosswordElement> emptySet());
+		}
+		if (batchRelayout) {
+			batchRelayout = false;
+			relayout();
+		}
+	}
+
+	private void relayoutBatched() {
+		if (batchDepth > 0)
+			batchRelayout = true;
+		else
+			relayout();
+	}
+
+	private void createBands(GraphVertex child, Set<CrosswordElement> ignores) {
+		for (EDimension dim : EDimension.values()) {
+			final IDType idType = child.getIDType(dim);
+			for (EDimension otherDim : EDimension.values()) {
+				// just the vertices of a compatible category are candidates
+				for (GraphVertex other : categoryIndex.get(otherDim).get(idType.getIDCategory())) {
+					if (other == child || batchAdded.contains(other) || ignores.contains(other.asElement()))
+						continue;
+					if (idType.resolvesTo(other.getIDType(otherDim)))
+						addEdge(child, other, SHARED, connect(dim), connect(otherDim));
+				}
+			}
 		}
 	}
 
@@ -255,11 +695,17 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 		return new VertexConnector(type, model);
 	}
 
-	private void addEdge(GraphVertex child, GraphVertex other, EEdgeType type, VertexConnector sourceConnector,
+	private GraphEdge addEdge(GraphVertex child, GraphVertex other, EEdgeType type, VertexConnector sourceConnector,
 			VertexConnector targetConnector) {
 		final GraphEdge edge = new GraphEdge(type, sourceConnector, targetConnector);
 		graph.addEdge(child, other, edge);
-		edge.update();
+		edge.apply(child.getIDs(sourceConnector.getDimension()), other.getIDs(targetConnector.getDimension()), 0);
+		scheduleUpdate(edge);
+		return edge;
+	}
+
+	private void addSiblingEdge(GraphVertex a, GraphVertex b, EDimension dim) {
+		addEdge(a, b, SIBLING, connect(dim), connect(dim)).setStructure(EStructure.SAME_PERSPECTIVE);
 	}
 
 	/**
@@ -267,14 +713,40 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 	 * @param dimensionSubTablePerspectives
 	 */
 	private void split(CrosswordElement base, boolean inDim) {
+		beginBatch();
+		try {
+			splitImpl(base, inDim);
+		} finally {
+			commitBatch();
+		}
+	}
+
+	private void splitImpl(CrosswordElement base, boolean inDim) {
 		TablePerspective table = base.getTablePerspective();
 		final EDimension type = EDimension.get(inDim);
 		final GraphVertex baseVertex = toVertex(base);
-		final GroupList groups = (inDim ? table.getDimensionPerspective() : table.getRecordPerspective())
-				.getVirtualArray().getGroupList();
+		final VirtualArray va = (inDim ? table.getDimensionPerspective() : table.getRecordPerspective())
+				.getVirtualArray();
+		final GroupList groups = va.getGroupList();
 		assert groups.size() > 1;
+		final List<TablePerspective> datas = inDim ? table.getDimensionSubTablePerspectives() : table
+				.getRecordSubTablePerspectives();
+
+		// the groups that get an element of their own, the others are aggregated into a single one
+		final BitSet shown = selectShownGroups(groups, baseVertex);
 
-		List<CrosswordElement> children = toElements(base, inDim, baseVertex, table);
+		final ElementConfig econfig = config.getSplittedElementConfig(baseVertex);
+		final TablePerspectiveMetaData metaData = createChildMetaData(inDim, 0);
+		List<CrosswordElement> children = new ArrayList<>(shown.cardinality() + 1);
+		int[] startIndices = new int[groups.size()];
+		for (int i = shown.nextSetBit(0); i >= 0; i = shown.nextSetBit(i + 1)) {
+			startIndices[children.size()] = groups.get(i).getStartIndex();
+			children.add(new CrosswordElement(datas.get(i), metaData, econfig, base));
+		}
+		if (shown.cardinality() < groups.size()) {
+			startIndices[children.size()] = groups.get(shown.nextClearBit(0)).getStartIndex();
+			children.add(createAggregate(base, inDim, va, shown, econfig));
+		}
 
 		// combine the elements that should be ignored
 		final ImmutableSet<CrosswordElement> ignore = ImmutableSet.<CrosswordElement> builder().addAll(children)
@@ -283,47 +755,163 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 
 		int total = inDim ? table.getNrDimensions() : table.getNrRecords();
 
-		List<GraphVertex> vertices = new ArrayList<>(ignore.size());
+		GraphVertex prev = null;
+		for (int i = 0; i < children.size(); ++i)
+			prev = addChild(baseVertex, children.get(i), startIndices[i] / (float) total, type, prev, ignore);
 
-		for (int i = 0; i < children.size(); ++i) {
-			CrosswordElement child = children.get(i);
-			Group group = groups.get(i);
-			GraphVertex vertex = addImpl(child);
-			vertices.add(vertex);
-			createBands(vertex, ignore);
-			int startIndex = group.getStartIndex();
-			float offset = startIndex / (float) total;
-			addEdge(baseVertex, vertex, PARENT_CHILD, connect(type, ConnectorStrategies.createParent(offset)),
-					connect(type));
-			// add parent edge
-			for (int j = 0; j < i; ++j) {
-				GraphVertex child2 = vertices.get(j);
-				addEdge(vertex, child2, SIBLING, connect(type.opposite()), connect(type.opposite())); // add sibling
-																										// edge
+		// update metadata flags
+		TablePerspectiveMetaData baseMetaData = base.getMetaData();
+		(inDim ? baseMetaData.getDimension() : baseMetaData.getRecord()).setSplitted();
+	}
+
+	private static TablePerspectiveMetaData createChildMetaData(boolean inDim, int additionalFlags) {
+		final int flags = PerspectiveMetaData.FLAG_CHILD | additionalFlags;
+		return new TablePerspectiveMetaData(inDim ? 0 : flags, inDim ? flags : 0);
+	}
+
+	private GraphVertex addChild(GraphVertex baseVertex, CrosswordElement child, float offset, EDimension type,
+			GraphVertex prevSibling, Set<CrosswordElement> ignore) {
+		GraphVertex vertex = addImpl(child);
+		createBands(vertex, ignore);
+		// add parent edge, the child is a subset of its parent
+		addEdge(baseVertex, vertex, PARENT_CHILD, connect(type, ConnectorStrategies.createParent(offset)),
+				connect(type)).setStructure(EStructure.CHILD_SUBSET);
+		if (prevSibling != null) {
+			// siblings share the perspective of the opposite dimension, so a chain between the adjacent ones is
+			// enough instead of an edge between every pair
+			addSiblingEdge(vertex, prevSibling, type.opposite());
+		}
+		return vertex;
+	}
+
+	/**
+	 * selects the groups, which will get an element of their own according to the split policy of the
+	 * {@link MultiConfig}: groups smaller than the minimal size and the smallest ones beyond the maximal number of
+	 * children will be aggregated
+	 *
+	 * @return the indices of the shown groups
+	 */
+	private BitSet selectShownGroups(final GroupList groups, GraphVertex baseVertex) {
+		final int n = groups.size();
+		final int minSize = config.getMinSplitGroupSize(baseVertex);
+		final int maxChildren = config.getMaxSplitChildren(baseVertex);
+
+		List<Integer> candidates = new ArrayList<>(n);
+		for (int i = 0; i < n; ++i)
+			if (groups.get(i).getSize() >= minSize)
+				candidates.add(i);
+		if (candidates.size() < n || candidates.size() > maxChildren) {
+			final int slots = Math.max(maxChildren, 1) - 1; // one for the aggregated element
+			if (candidates.size() > slots) {
+				// keep the largest ones, stable for equal sizes
+				Collections.sort(candidates, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer o1, Integer o2) {
+						return Integer.compare(groups.get(o2).getSize(), groups.get(o1).getSize());
+					}
+				});
+				candidates = candidates.subList(0, slots);
 			}
 		}
+		BitSet shown = new BitSet(n);
+		for (Integer i : candidates)
+			shown.set(i);
+		if (n - shown.cardinality() == 1) // aggregating a single group doesn't pay off
+			shown.set(0, n);
+		return shown;
+	}
 
-		// update metadata flags
-		TablePerspectiveMetaData metaData = base.getMetaData();
-		(inDim ? metaData.getDimension() : metaData.getRecord()).setSplitted();
+	/**
+	 * creates an element, which aggregates all not shown groups of the split perspective
+	 */
+	private CrosswordElement createAggregate(CrosswordElement base, boolean inDim, VirtualArray va, BitSet shown,
+			ElementConfig econfig) {
+		final TablePerspective table = base.getTablePerspective();
+		final GroupList groups = va.getGroupList();
+		final int[] aggregatedGroups = new int[groups.size() - shown.cardinality()];
+		List<Integer> ids = new ArrayList<>();
+		int k = 0;
+		for (int i = shown.nextClearBit(0); i < groups.size(); i = shown.nextClearBit(i + 1)) {
+			aggregatedGroups[k++] = i;
+			Group group = groups.get(i);
+			for (int j = group.getStartIndex(); j < group.getStartIndex() + group.getSize(); ++j)
+				ids.add(va.get(j));
+		}
+
+		final ATableBasedDataDomain dataDomain = table.getDataDomain();
+		Perspective split = inDim ? table.getDimensionPerspective() : table.getRecordPerspective();
+		Perspective perspective = new Perspective(dataDomain, split.getIdType());
+		PerspectiveInitializationData data = new PerspectiveInitializationData();
+		data.setData(ids);
+		perspective.init(data);
+		perspective.setLabel("Other " + aggregatedGroups.length + " Groups", false);
+		perspective.setPrivate(true);
+
+		TablePerspective t = inDim ? new TablePerspective(dataDomain, table.getRecordPerspective(), perspective)
+				: new TablePerspective(dataDomain, perspective, table.getDimensionPerspective());
+		t.setPrivate(true);
+
+		CrosswordElement aggregate = new CrosswordElement(t, createChildMetaData(inDim,
+				PerspectiveMetaData.FLAG_AGGREGATED), econfig, base);
+		aggregates.put(aggregate, new Aggregate(base, inDim, aggregatedGroups));
+		return aggregate;
 	}
 
-	private List<CrosswordElement> toElements(CrosswordElement base, boolean inDim, final GraphVertex baseVertex,
-			TablePerspective table) {
-		final List<TablePerspective> datas = inDim ? table.getDimensionSubTablePerspectives() : table
+	/**
+	 * replaces the given aggregated element with elements for each of its groups
+	 *
+	 * @param aggregate
+	 */
+	public void expand(CrosswordElement aggregate) {
+		final Aggregate info = aggregates.get(aggregate);
+		final GraphVertex vertex = toVertex(aggregate);
+		final GraphVertex baseVertex = toVertex(info == null ? null : info.base);
+		if (vertex == null || baseVertex == null)
+			return;
+		final TablePerspective table = info.base.getTablePerspective();
+		final EDimension type = EDimension.get(info.inDim);
+		final List<TablePerspective> datas = info.inDim ? table.getDimensionSubTablePerspectives() : table
 				.getRecordSubTablePerspectives();
+		final GroupList groups = (info.inDim ? table.getDimensionPerspective() : table.getRecordPerspective())
+				.getVirtualArray().getGroupList();
+		final int total = info.inDim ? table.getNrDimensions() : table.getNrRecords();
 
-		List<CrosswordElement> children = new ArrayList<>(datas.size());
+		GraphVertex prev = null;
+		for (GraphEdge edge : vertex.getEdges())
+			if (edge.getType() == SIBLING)
+				prev = edge.getSource() == vertex ? edge.getTarget() : edge.getSource();
 
-		final ElementConfig econfig = config.getSplittedElementConfig(baseVertex);
+		// the groups, which got an element of their own in the meantime
+		Set<Perspective> existing = Collections.newSetFromMap(new IdentityHashMap<Perspective, Boolean>());
+		for (GraphEdge edge : baseVertex.getEdges())
+			if (edge.getType() == PARENT_CHILD && edge.getSource() == baseVertex && edge.getTarget() != vertex)
+				existing.add(edge.getTarget().getPerspective(type));
 
-		TablePerspectiveMetaData metaData = new TablePerspectiveMetaData(
-					inDim ? 0 : PerspectiveMetaData.FLAG_CHILD, inDim ? PerspectiveMetaData.FLAG_CHILD : 0);
-		for (TablePerspective t : datas) {
-			final CrosswordElement new_ = new CrosswordElement(t, metaData, econfig, base);
-			children.add(new_);
+		final ElementConfig econfig = config.getSplittedElementConfig(baseVertex);
+		final TablePerspectiveMetaData metaData = createChildMetaData(info.inDim, 0);
+		List<CrosswordElement> children = new ArrayList<>(info.groups.length);
+		List<Group> childGroups = new ArrayList<>(info.groups.length);
+		for (int i : info.groups) {
+			if (i >= datas.size()) // the groups changed in the meantime
+				continue;
+			if (existing.contains(info.inDim ? datas.get(i).getDimensionPerspective() : datas.get(i)
+					.getRecordPerspective())) // already expanded
+				continue;
+			children.add(new CrosswordElement(datas.get(i), metaData, econfig, info.base));
+			childGroups.add(groups.get(i));
+		}
+		final ImmutableSet<CrosswordElement> ignore = ImmutableSet.<CrosswordElement> builder().addAll(children)
+				.add(info.base).build();
+
+		beginBatch();
+		try {
+			remove(aggregate);
+			for (int i = 0; i < children.size(); ++i)
+				prev = addChild(baseVertex, children.get(i), childGroups.get(i).getStartIndex() / (float) total,
+						type, prev, ignore);
+		} finally {
+			commitBatch();
 		}
-		return children;
 	}
 
 	/**
@@ -388,7 +976,7 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 	public void remove(GLElement child) {
 		if (removeVertex(child)) {
 			GLElementAccessor.takeDown(child);
-			relayout();
+			relayoutBatched();
 		}
 	}
 
@@ -400,8 +988,13 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 	}
 
 	public void addAll(Iterable<TablePerspective> tablePerspectives) {
-		for (TablePerspective tablePerspective : tablePerspectives)
-			add(tablePerspective);
+		beginBatch();
+		try {
+			for (TablePerspective tablePerspective : tablePerspectives)
+				add(tablePerspective);
+		} finally {
+			commitBatch();
+		}
 	}
 
 	/**
@@ -410,14 +1003,30 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 	public void removeAll(Collection<TablePerspective> removed) {
 		if (removed.isEmpty())
 			return;
-		List<CrosswordElement> toRemove = new ArrayList<>();
+		final Set<TablePerspective> lookup = ImmutableSet.copyOf(removed); // hashed lookups
+		Set<GLElement> toRemove = Collections.newSetFromMap(new IdentityHashMap<GLElement, Boolean>());
 		for (CrosswordElement elem : Iterables.filter(this, CrosswordElement.class)) {
-			if (removed.contains(elem.getTablePerspective())
-					|| removed.contains(elem.getTablePerspective().getParentTablePerspective()))
+			if (lookup.contains(elem.getTablePerspective())
+					|| lookup.contains(elem.getTablePerspective().getParentTablePerspective()))
 				toRemove.add(elem);
 		}
-		for (CrosswordElement r : toRemove)
-			remove(r);
+		// the aggregated groups have no parent table perspective, but belong to their base
+		for (Map.Entry<GLElement, Aggregate> entry : aggregates.entrySet())
+			if (toRemove.contains(entry.getValue().base))
+				toRemove.add(entry.getKey());
+		beginBatch();
+		try {
+			for (GLElement r : toRemove) {
+				GraphVertex vertex = toVertex(r);
+				if (vertex != null)
+					batchRemoved.add(vertex);
+			}
+			for (GLElement r : toRemove)
+				remove(r);
+		} finally {
+			batchRemoved.clear();
+			commitBatch();
+		}
 	}
 
 	public Iterable<GraphEdge> getBands() {
@@ -428,15 +1037,48 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 	 * @param crosswordElement
 	 */
 	public void onConnectionsChanged(CrosswordElement child) {
-		for (GraphEdge edge : graph.edgesOf(toVertex(child)))
-			edge.update();
+		onConnectionsChanged(child, null, null);
+	}
+
+	/**
+	 * updates the incident edges of the given element, by applying the deltas of its ids if possible
+	 *
+	 * @param child
+	 * @param recordDelta
+	 *            the change of the record ids or <code>null</code> if unknown
+	 * @param dimensionDelta
+	 *            the change of the dimension ids or <code>null</code> if unknown
+	 */
+	public void onConnectionsChanged(CrosswordElement child, TypedSetDelta recordDelta, TypedSetDelta dimensionDelta) {
+		fragments.clear();
+		GraphVertex vertex = toVertex(child);
+		boolean changed = false;
+		for (GraphEdge edge : graph.edgesOf(vertex)) {
+			if (edge.isUpToDate()) { // the ids of both ends are the same as at the last update
+				skippedEdgeUpdates++;
+				continue;
+			}
+			if (edge.getSource() == edge.getTarget()) { // self loop: both ends change
+				scheduleUpdate(edge);
+				continue;
+			}
+			final boolean atSource = edge.getSource() == vertex;
+			EDimension dim = (atSource ? edge.getSourceConnector() : edge.getTargetConnector()).getDimension();
+			TypedSetDelta delta = dim == RECORD ? recordDelta : dimensionDelta;
+			if (delta != null && delta.isEmpty())
+				continue;
+			if (!dirtyEdges.contains(edge) && !pendingEdgesSet.contains(edge) && edge.canUpdate(delta, atSource)) {
+				changed |= edge.update(delta, atSource);
+				recomputedEdgeUpdates++;
+			} else
+				scheduleUpdate(edge);
+		}
+		if (changed)
+			relayout();
 	}
 
 	private GraphVertex toVertex(GLElement child) {
-		for (GraphVertex vertex : graph.vertexSet())
-			if (vertex.asElement() == child)
-				return vertex;
-		return null;
+		return vertices.get(child);
 	}
 
 	public void changePerspective(CrosswordElement child, boolean isDim, Perspective new_) {
@@ -465,12 +1107,72 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 		}
 	}
 
-	private class GraphVertex implements IGraphVertex {
+	private class GraphVertex extends CompactGraph.AVertex<GraphEdge> implements IGraphVertex {
 		private final CrosswordElement element;
+		/**
+		 * the id categories at creation time, see {@link #categoryIndex}
+		 */
+		private final IDCategory recordCategory;
+		private final IDCategory dimensionCategory;
+
+		/**
+		 * version stamps of the ids per {@link EDimension}, bumped whenever the id set instance changes
+		 */
+		private final TypedSet[] lastIDs = new TypedSet[2];
+		private final int[] idVersions = new int[2];
+		/**
+		 * version stamp of the bounds, bumped whenever they change
+		 */
+		private float lastX = Float.NaN, lastY = Float.NaN, lastW = Float.NaN, lastH = Float.NaN;
+		private int geometryVersion = 0;
 
 		public GraphVertex(CrosswordElement element) {
 			super();
 			this.element = element;
+			this.recordCategory = getIDType(RECORD).getIDCategory();
+			this.dimensionCategory = getIDType(DIMENSION).getIDCategory();
+		}
+
+		public IDType getIDType(EDimension dim) {
+			return getPerspective(dim).getIdType();
+		}
+
+		Perspective getPerspective(EDimension dim) {
+			TablePerspective t = getTablePerspective();
+			return dim == RECORD ? t.getRecordPerspective() : t.getDimensionPerspective();
+		}
+
+		IDCategory getIDCategory(EDimension dim) {
+			return dim == RECORD ? recordCategory : dimensionCategory;
+		}
+
+		/**
+		 * @return the version of the ids of the given dimension, the ids are interned so an identity check suffices
+		 */
+		int getIDVersion(EDimension dim) {
+			final int i = dim.ordinal();
+			TypedSet ids = getIDs(dim);
+			if (ids != lastIDs[i]) {
+				lastIDs[i] = ids;
+				idVersions[i]++;
+			}
+			return idVersions[i];
+		}
+
+		/**
+		 * @return the version of the bounds of this vertex
+		 */
+		int getGeometryVersion() {
+			Rect b = getBounds();
+			if (Float.compare(b.x(), lastX) != 0 || Float.compare(b.y(), lastY) != 0
+					|| Float.compare(b.width(), lastW) != 0 || Float.compare(b.height(), lastH) != 0) {
+				lastX = b.x();
+				lastY = b.y();
+				lastW = b.width();
+				lastH = b.height();
+				geometryVersion++;
+			}
+			return geometryVersion;
 		}
 
 		public CrosswordElement asElement() {
@@ -532,6 +1234,40 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 		}
 	}
 
+	/**
+	 * the groups of a split, which are aggregated into a single element
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	private static final class Aggregate {
+		private final CrosswordElement base;
+		private final boolean inDim;
+		private final int[] groups;
+
+		public Aggregate(CrosswordElement base, boolean inDim, int[] groups) {
+			this.base = base;
+			this.inDim = inDim;
+			this.groups = groups;
+		}
+	}
+
+	/**
+	 * knowledge about the intersection of an edge, derived from the split hierarchy instead of set operations
+	 */
+	private enum EStructure {
+		NONE,
+		/**
+		 * the target is a group of the source, i.e. the intersection is the target itself once this was confirmed by
+		 * a real count for the current ids of both ends
+		 */
+		CHILD_SUBSET,
+		/**
+		 * both ends use the same perspective, i.e. they share all ids once both are converted
+		 */
+		SAME_PERSPECTIVE
+	}
+
 	private static class VertexConnector implements IVertexConnector {
 		private final EDimension type;
 		private final IConnectorStrategy strategy;
@@ -557,18 +1293,84 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 			return values.getRadius();
 		}
 
-		public void update(TypedSet ids, TypedSet intersection) {
-			values = strategy.update(ids, intersection);
+		/**
+		 * @return whether the {@link CenterRadius} changed
+		 */
+		public boolean update(TypedSet ids, int intersectionSize) {
+			CenterRadius old = values;
+			values = strategy.update(ids, intersectionSize);
+			return !values.equals(old);
+		}
+	}
+
+	/**
+	 * a snapshot of the inputs of an edge and its background computed intersection size
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	private static final class EdgeUpdate implements Runnable {
+		private final GraphEdge edge;
+		private final TypedSet sourceIDs;
+		private final TypedSet targetIDs;
+		private int intersectionSize;
+
+		public EdgeUpdate(GraphEdge edge) {
+			this.edge = edge;
+			this.sourceIDs = edge.getSourceIDs();
+			this.targetIDs = edge.getTargetIDs();
+		}
+
+		@Override
+		public void run() {
+			intersectionSize = GraphEdge.computeIntersectionSize(sourceIDs, targetIDs);
+		}
+
+		/**
+		 * @return whether the inputs of the edge changed since the snapshot
+		 */
+		boolean isStale() {
+			return edge.getSourceIDs() != sourceIDs || edge.getTargetIDs() != targetIDs;
 		}
 	}
 
-	private static class GraphEdge extends DefaultEdge implements IGraphEdge {
-		private static final long serialVersionUID = -92295569780679555L;
+	private static class GraphEdge extends CompactGraph.AEdge<GraphVertex> implements IGraphEdge {
 		private final EEdgeType type;
+		private int intersectionSize;
+		/**
+		 * lazily computed intersection, see {@link #getIntersection()}
+		 */
 		private TypedSet intersection;
 		private final VertexConnector sourceConnector;
 		private final VertexConnector targetConnector;
 
+		/**
+		 * id versions of the source and target end at the last update or -1 if never computed
+		 */
+		private int sourceIDVersion = -1;
+		private int targetIDVersion = -1;
+		/**
+		 * version of the route inputs, i.e. the bounds of both vertices and the connectors
+		 */
+		private int version = 0;
+		private int sourceGeometryVersion = -1;
+		private int targetGeometryVersion = -1;
+
+		/**
+		 * knowledge about the intersection derived from the split hierarchy
+		 */
+		private EStructure structure = EStructure.NONE;
+		/**
+		 * for {@link EStructure#CHILD_SUBSET}: the ids of both ends, for which the child was confirmed to be a subset
+		 */
+		private TypedSet structuralParentIDs;
+		private TypedSet structuralChildIDs;
+
+		/**
+		 * whether this edge is currently not shown, see {@link CrosswordMultiElement#updatePruning()}
+		 */
+		private boolean pruned = false;
+
 		public GraphEdge(EEdgeType type, VertexConnector sourceConnector, VertexConnector targetConnector) {
 			this.type = type;
 			this.sourceConnector = sourceConnector;
@@ -577,19 +1379,31 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 		}
 		@Override
 		public GraphVertex getSource() {
-			return (GraphVertex) super.getSource();
+			return super.getSource();
 		}
 
 		@Override
 		public GraphVertex getTarget() {
-			return (GraphVertex) super.getTarget();
+			return super.getTarget();
 		}
 
 		@Override
 		public TypedSet getIntersection() {
+			if (intersection == null) {
+				TypedSet sourceIDs = getSource().getIDs(sourceConnector.getDimension());
+				TypedSet targetIDs = getTarget().getIDs(targetConnector.getDimension());
+				intersection = getStructuralIntersection(sourceIDs, targetIDs);
+				if (intersection == null)
+					intersection = sourceIDs.intersect(targetIDs);
+			}
 			return intersection;
 		}
 
+		@Override
+		public int getIntersectionSize() {
+			return intersectionSize;
+		}
+
 		@Override
 		public VertexConnector getSourceConnector() {
 			return sourceConnector;
@@ -605,17 +1419,168 @@ public class CrosswordMultiElement extends GLElement implements IHasMinSize, IGL
 			return type;
 		}
 
+		@Override
+		public int getVersion() {
+			final int s = getSource().getGeometryVersion();
+			final int t = getTarget().getGeometryVersion();
+			if (s != sourceGeometryVersion || t != targetGeometryVersion) {
+				sourceGeometryVersion = s;
+				targetGeometryVersion = t;
+				version++;
+			}
+			return version;
+		}
+
+		void setStructure(EStructure structure) {
+			this.structure = structure;
+		}
+
 		/**
+		 * @return the intersection as derived from the split hierarchy or <code>null</code> if not known
+		 */
+		TypedSet getStructuralIntersection(TypedSet sourceIDs, TypedSet targetIDs) {
+			switch (structure) {
+			case CHILD_SUBSET:
+				// valid as long as neither end changed since the last confirmation
+				if (sourceIDs == structuralParentIDs && targetIDs == structuralChildIDs)
+					return targetIDs;
+				return null;
+			case SAME_PERSPECTIVE:
+				return isSamePerspective() && sourceIDs == targetIDs ? sourceIDs : null;
+			default:
+				return null;
+			}
+		}
+
+		/**
+		 * @return whether both ends are known to be equal, but one of them is still being converted. Otherwise
+		 *         differing ends, e.g. as they were interned in different dictionaries, are counted for real
+		 */
+		boolean isStructurallyPending(TypedSet sourceIDs, TypedSet targetIDs) {
+			return structure == EStructure.SAME_PERSPECTIVE && sourceIDs != targetIDs && isSamePerspective()
+					&& (getSource().asElement().isConverting() || getTarget().asElement().isConverting());
+		}
+
+		private boolean isSamePerspective() {
+			return getSource().getPerspective(sourceConnector.getDimension()) == getTarget().getPerspective(
+					targetConnector.getDimension());
+		}
+
+		/**
+		 * @return whether the ids of both ends are the same as at the last update
+		 */
+		boolean isUpToDate() {
+			return sourceIDVersion == getSource().getIDVersion(sourceConnector.getDimension())
+					&& targetIDVersion == getTarget().getIDVersion(targetConnector.getDimension());
+		}
+
+		/**
+		 * records the current id versions of both ends as computed
+		 */
+		void markUpToDate() {
+			sourceIDVersion = getSource().getIDVersion(sourceConnector.getDimension());
+			targetIDVersion = getTarget().getIDVersion(targetConnector.getDimension());
+		}
+
+		/**
+		 * updates the number of shared ids and the connectors, the intersection itself will be computed on demand
 		 *
+		 * @return whether any connector changed
 		 */
-		public void update() {
-			GraphVertex s = getSource();
-			GraphVertex t = getTarget();
-			TypedSet sourceIDs = s.getIDs(sourceConnector.getDimension());
-			TypedSet targetIDs = t.getIDs(targetConnector.getDimension());
-			intersection = sourceIDs.intersect(targetIDs);
-			sourceConnector.update(sourceIDs, intersection);
-			targetConnector.update(targetIDs, intersection);
+		public boolean update() {
+			TypedSet sourceIDs = getSourceIDs();
+			TypedSet targetIDs = getTargetIDs();
+			TypedSet known = getStructuralIntersection(sourceIDs, targetIDs);
+			boolean changed = apply(sourceIDs, targetIDs,
+					known != null ? known.size() : computeIntersectionSize(sourceIDs, targetIDs));
+			markUpToDate();
+			return changed;
+		}
+
+		TypedSet getSourceIDs() {
+			return getSource().getIDs(sourceConnector.getDimension());
+		}
+
+		TypedSet getTargetIDs() {
+			return getTarget().getIDs(targetConnector.getDimension());
+		}
+
+		/**
+		 * can be called from any thread
+		 */
+		static int computeIntersectionSize(TypedSet sourceIDs, TypedSet targetIDs) {
+			if (sourceIDs == targetIDs) // interned identical sets share everything
+				return sourceIDs.size();
+			return sourceIDs.and(targetIDs);
+		}
+
+		/**
+		 * sets the number of shared ids and updates the connectors
+		 *
+		 * @return whether any connector changed
+		 */
+		boolean apply(TypedSet sourceIDs, TypedSet targetIDs, int intersectionSize) {
+			if (structure == EStructure.CHILD_SUBSET) { // confirm or revoke the subset shortcut
+				boolean subset = intersectionSize == targetIDs.size();
+				structuralParentIDs = subset ? sourceIDs : null;
+				structuralChildIDs = subset ? targetIDs : null;
+			}
+			this.intersection = sourceIDs == targetIDs ? sourceIDs : null;
+			this.intersectionSize = intersectionSize;
+			boolean changed = sourceConnector.update(sourceIDs, intersectionSize);
+			changed |= targetConnector.update(targetIDs, intersectionSize);
+			if (changed)
+				version++;
+			return changed;
+		}
+
+		/**
+		 * @return whether {@link #update(TypedSetDelta, boolean)} can be done incrementally
+		 */
+		boolean canUpdate(TypedSetDelta delta, boolean atSource) {
+			if (delta == null || !delta.isSmall() || structure != EStructure.NONE) // structural ones are O(1) anyway
+				return false;
+			TypedSet sourceIDs = getSourceIDs();
+			TypedSet targetIDs = getTargetIDs();
+			return sourceIDs != targetIDs && delta.isCompatible(atSource ? targetIDs : sourceIDs);
+		}
+
+		/**
+		 * incremental version of {@link #update()} in O(delta), if one end changed by the given delta
+		 *
+		 * @param delta
+		 *            the change of the ids of the changed end or <code>null</code> if unknown
+		 * @param atSource
+		 *            whether the source or the target end changed
+		 * @return whether any connector changed
+		 */
+		public boolean update(TypedSetDelta delta, boolean atSource) {
+			if (delta == null || !delta.isSmall())
+				return update();
+			if (delta.isEmpty())
+				return false;
+			TypedSet sourceIDs = getSourceIDs();
+			TypedSet targetIDs = getTargetIDs();
+			TypedSet other = atSource ? targetIDs : sourceIDs;
+			if (!delta.isCompatible(other) || sourceIDs == targetIDs)
+				return update();
+			final int size = delta.and(other, intersectionSize);
+			final boolean sizeChanged = size != intersectionSize;
+			intersection = null;
+			intersectionSize = size;
+			// the connector of the changed end depends on its set size, the other one just on the intersection size
+			VertexConnector changedConnector = atSource ? sourceConnector : targetConnector;
+			boolean changed = changedConnector.update(delta.getTo(), size);
+			if (sizeChanged) {
+				if (atSource)
+					changed |= targetConnector.update(targetIDs, size);
+				else
+					changed |= sourceConnector.update(sourceIDs, size);
+			}
+			markUpToDate();
+			if (changed)
+				version++;
+			return changed;
 		}
 	}
 }
@@ -7,16 +7,109 @@ package org.caleydo.view.crossword.api.ui.layout;
 
 import gleem.linalg.Vec2f;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.caleydo.core.view.opengl.layout2.geom.Rect;
+import org.caleydo.core.view.opengl.util.spline.TesselatedPolygons;
+import org.caleydo.view.crossword.api.model.BandRoute;
+import org.caleydo.view.crossword.api.ui.band.Route;
 import org.caleydo.view.crossword.spi.ui.layout.IGraphLayout;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * @author Samuel Gratzl
  *
  */
 public abstract class AGraphLayout implements IGraphLayout {
+	/**
+	 * memoized routes of the edges of the last layout runs, see {@link #routeEdges(Set)}
+	 */
+	private final Map<IGraphEdge, RouteEntry> routeEntries = new IdentityHashMap<>();
+	private final List<RouteEntry> entries = new ArrayList<>();
+	private final List<BandRoute> routes = new ArrayList<>();
+	private int generation = 0;
+
+	private long reusedRoutes = 0;
+	private long rebuiltRoutes = 0;
+
+	/**
+	 * @return the number of routes, which were reused as their inputs didn't change
+	 */
+	public final long getReusedRoutes() {
+		return reusedRoutes;
+	}
+
+	/**
+	 * @return the number of routes, which were rebuilt
+	 */
+	public final long getRebuiltRoutes() {
+		return rebuiltRoutes;
+	}
+
+	/**
+	 * patches the routes of the previous run: just the ones of new edges or edges whose vertex bounds or connectors
+	 * changed will be rebuilt, the ones of removed edges dropped. The routes keep their relative order across runs,
+	 * such that e.g. picking by index stays stable
+	 *
+	 * @param edges
+	 *            the edges to route
+	 * @return a snapshot of the patched routes, not affected by later runs
+	 */
+	protected final GraphLayoutModel routeEdges(Set<? extends IGraphEdge> edges) {
+		final int g = ++generation;
+		for (IGraphEdge edge : edges) {
+			RouteEntry entry = routeEntries.get(edge);
+			if (entry == null) {
+				entry = new RouteEntry(edge, routes.size());
+				routeEntries.put(edge, entry);
+				entries.add(entry);
+				routes.add(null);
+			}
+			entry.generation = g;
+			if (entry.isValid()) {
+				reusedRoutes++;
+				continue;
+			}
+			routes.set(entry.index, createRoute(edge));
+			rebuiltRoutes++;
+		}
+		if (routeEntries.size() > edges.size()) { // drop the ones of removed edges, compacting in place
+			int k = 0;
+			for (int i = 0; i < entries.size(); ++i) {
+				RouteEntry entry = entries.get(i);
+				if (entry.generation != g) {
+					routeEntries.remove(entry.edge);
+					continue;
+				}
+				entry.index = k;
+				entries.set(k, entry);
+				routes.set(k++, routes.get(i));
+			}
+			entries.subList(k, entries.size()).clear();
+			routes.subList(k, routes.size()).clear();
+		}
+		return new GraphLayoutModel(false, ImmutableList.copyOf(routes));
+	}
+
+	/**
+	 * creates the route of the given edge
+	 *
+	 * @param edge
+	 * @return
+	 */
+	protected BandRoute createRoute(IGraphEdge edge) {
+		List<Vec2f> curve = new ArrayList<>();
+		float radius1 = addStart(curve, edge, 10);
+		float radius2 = addEnd(curve, edge, 10);
+		Route r = new Route(TesselatedPolygons.spline(curve, 10));
+		return new BandRoute(r, edge.getType().getColor(), edge, radius1, radius2);
+	}
+
 	/**
 	 * @param edge
 	 * @return
@@ -89,4 +182,59 @@ public abstract class AGraphLayout implements IGraphLayout {
 		curve.add(pos);
 		return radius;
 	}
+
+	/**
+	 * the memoized route inputs of an edge: bounds of both vertices and center/radius of both connectors
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	private static final class RouteEntry {
+		private final IGraphEdge edge;
+		private int index;
+		private int generation;
+		/**
+		 * {@link IGraphEdge#getVersion()} at the time of the last validation, as a fast path
+		 */
+		private int version;
+		private final float[] key = new float[12];
+		private boolean initialized = false;
+
+		public RouteEntry(IGraphEdge edge, int index) {
+			this.edge = edge;
+			this.index = index;
+		}
+
+		/**
+		 * @return whether the memoized route is still valid, updates the key if not
+		 */
+		boolean isValid() {
+			final int v = edge.getVersion();
+			if (initialized && v == version)
+				return true;
+			version = v;
+			boolean same = set(0, edge.getSource().getBounds());
+			same &= set(4, edge.getTarget().getBounds());
+			same &= set(8, edge.getSourceConnector());
+			same &= set(10, edge.getTargetConnector());
+			same &= initialized;
+			initialized = true;
+			return same;
+		}
+
+		private boolean set(int i, Rect bounds) {
+			return set(i, bounds.x()) & set(i + 1, bounds.y()) & set(i + 2, bounds.width())
+					& set(i + 3, bounds.height());
+		}
+
+		private boolean set(int i, IVertexConnector connector) {
+			return set(i, connector.getCenter()) & set(i + 1, connector.getRadius());
+		}
+
+		private boolean set(int i, float v) {
+			boolean same = Float.compare(key[i], v) == 0;
+			key[i] = v;
+			return same;
+		}
+	}
 }
@@ -27,9 +27,24 @@ public interface IGraphEdge {
 	EEdgeType getType();
 
 	/**
-	 * return the shared ids
+	 * return the shared ids, computed on demand
 	 *
 	 * @return
 	 */
 	TypedSet getIntersection();
+
+	/**
+	 * return the number of shared ids, without computing the intersection itself
+	 *
+	 * @return
+	 */
+	int getIntersectionSize();
+
+	/**
+	 * version of the inputs of the route of this edge, i.e. the bounds of both vertices and the connector values.
+	 * Changes whenever one of them changes.
+	 *
+	 * @return
+	 */
+	int getVersion();
 }
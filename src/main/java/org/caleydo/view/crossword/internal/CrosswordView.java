@@ -17,9 +17,11 @@ import org.caleydo.core.view.opengl.layout2.GLElementDecorator;
 import org.caleydo.core.view.opengl.layout2.basic.ScrollingDecorator;
 import org.caleydo.core.view.opengl.layout2.view.AMultiTablePerspectiveElementView;
 import org.caleydo.view.crossword.api.ui.CrosswordMultiElement;
+import org.caleydo.view.crossword.internal.event.ToggleBandModeEvent;
 import org.caleydo.view.crossword.internal.event.ToggleHeaderAlwaysEvent;
 import org.caleydo.view.crossword.internal.serial.SerializedCrosswordView;
 import org.caleydo.view.crossword.spi.config.MultiConfig;
+import org.caleydo.view.crossword.spi.model.IBandRenderer.EBandMode;
 
 /**
  * basic view based on {@link GLElement} with a {@link AMultiTablePerspectiveElementView}
@@ -57,8 +59,13 @@ public class CrosswordView extends AMultiTablePerspectiveElementView {
 	@Override
 	protected void applyTablePerspectives(GLElementDecorator root, List<TablePerspective> all,
 			List<TablePerspective> added, List<TablePerspective> removed) {
-		crossword.removeAll(removed);
-		crossword.addAll(added);
+		crossword.beginBatch();
+		try {
+			crossword.removeAll(removed);
+			crossword.addAll(added);
+		} finally {
+			crossword.commitBatch();
+		}
 	}
 
 	@ListenTo(sendToMe = true)
@@ -66,6 +73,11 @@ public class CrosswordView extends AMultiTablePerspectiveElementView {
 		crossword.toggleAlwaysShowHeader();
 	}
 
+	@ListenTo(sendToMe = true)
+	private void onToggleBandMode(ToggleBandModeEvent event) {
+		crossword.setBandMode(crossword.getBandMode() == EBandMode.FRAGMENT ? EBandMode.PAIRWISE : EBandMode.FRAGMENT);
+	}
+
 	public void replaceTablePerspectiveInternally(TablePerspective from, TablePerspective to) {
 		int fromIndex = this.tablePerspectives.indexOf(from);
 		if (fromIndex < 0)
@@ -8,6 +8,7 @@ package org.caleydo.view.crossword.internal.action;
 import org.caleydo.core.gui.SimpleAction;
 import org.caleydo.core.gui.SimpleEventAction;
 import org.caleydo.view.crossword.internal.Resources;
+import org.caleydo.view.crossword.internal.event.ToggleBandModeEvent;
 import org.caleydo.view.crossword.internal.event.ToggleHeaderAlwaysEvent;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.ActionContributionItem;
@@ -55,6 +56,9 @@ public class SettingsAction extends SimpleAction implements IMenuCreator {
  "resources/icons/text_large_cap.png", Resources
 						.getResourceLoader(), new ToggleHeaderAlwaysEvent()
 						.to(receiver).from(this)));
+		addActionToMenu(menu, new SimpleEventAction("Toggle highlight exclusive band fragments",
+				"resources/icons/icon.png", Resources.getResourceLoader(), new ToggleBandModeEvent().to(receiver)
+						.from(this)));
 
 		return menu;
 	}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.concurrent;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Throwables;
+
+/**
+ * bounded worker pool for the computations of the crossword view, which should not block the rendering thread, e.g.
+ * id conversions and intersections.
+ *
+ * the number of workers is bounded by the available processors. The queue itself is unbounded, but coalesced per
+ * owner: each owner, i.e. an element or the edges of a view, has at most one pending task, which it cancels via
+ * {@link #cancel(Future)} before submitting a newer one. Thus the latest task of an owner wins, the queue length is
+ * bounded by the number of owners and a task is never cancelled in favor of another owner's one. The caller, usually
+ * the rendering thread, never runs a task itself.
+ *
+ * in addition a fork/join pool using all processors is available for fanning out many independent small tasks, see
+ * {@link #invokeAll(List)}
+ *
+ * the pools are shared by all views and aren't shut down: views cancel their own pending tasks when they are taken
+ * down and all workers are daemon threads, which terminate after being idle for a while, such that no thread outlives
+ * its usage.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class CrosswordExecutor {
+	/**
+	 * number of tasks executed sequentially by a single fork/join leaf
+	 */
+	private static final int GRAIN = 4;
+
+	private static final ThreadPoolExecutor executor;
+	static {
+		final int workers = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+		executor = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					private final AtomicInteger counter = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "Crossword Worker " + counter.incrementAndGet());
+						t.setDaemon(true);
+						t.setPriority(Thread.NORM_PRIORITY - 1);
+						return t;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	private static final ForkJoinPool forkJoin = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+			new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+				private final AtomicInteger counter = new AtomicInteger();
+
+				@Override
+				public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+					ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+					t.setName("Crossword ForkJoin Worker " + counter.incrementAndGet());
+					t.setPriority(Thread.NORM_PRIORITY - 1);
+					return t;
+				}
+			}, null, false);
+
+	private CrosswordExecutor() {
+
+	}
+
+	/**
+	 * @param task
+	 * @return the future of the task, to be cancelled by the owner if superseded
+	 */
+	public static <T> Future<T> submit(Callable<T> task) {
+		return executor.submit(task);
+	}
+
+	/**
+	 * executes the given independent tasks in parallel using the fork/join pool and waits till all of them are done.
+	 * The results have to be merged by the caller.
+	 *
+	 * @param tasks
+	 * @throws InterruptedException
+	 *             if the calling thread was interrupted, the not yet started tasks will be skipped
+	 */
+	public static void invokeAll(List<? extends Runnable> tasks) throws InterruptedException {
+		if (tasks.size() <= GRAIN) { // not worth forking
+			for (Runnable task : tasks) {
+				if (Thread.interrupted())
+					throw new InterruptedException();
+				task.run();
+			}
+			return;
+		}
+		final AtomicBoolean cancelled = new AtomicBoolean(false);
+		RangeAction root = new RangeAction(tasks, 0, tasks.size(), cancelled);
+		forkJoin.execute(root);
+		try {
+			root.get();
+		} catch (InterruptedException e) {
+			cancelled.set(true);
+			throw e;
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	/**
+	 * cancels the given computation if it is still running and removes it from the queue if it is still waiting
+	 *
+	 * @param future
+	 *            the computation or <code>null</code>
+	 */
+	public static void cancel(Future<?> future) {
+		if (future != null && !future.isDone()) {
+			future.cancel(true);
+			if (future instanceof Runnable) // not waiting for its turn just to be skipped
+				executor.remove((Runnable) future);
+		}
+	}
+
+	/**
+	 * recursively splits a range of tasks in halves till {@link #GRAIN} is reached
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	private static final class RangeAction extends RecursiveAction {
+		private static final long serialVersionUID = 4519522390617324387L;
+
+		private final List<? extends Runnable> tasks;
+		private final int from;
+		private final int to;
+		private final AtomicBoolean cancelled;
+
+		public RangeAction(List<? extends Runnable> tasks, int from, int to, AtomicBoolean cancelled) {
+			this.tasks = tasks;
+			this.from = from;
+			this.to = to;
+			this.cancelled = cancelled;
+		}
+
+		@Override
+		protected void compute() {
+			if (cancelled.get())
+				return;
+			if (to - from <= GRAIN) {
+				for (int i = from; i < to && !cancelled.get(); ++i)
+					tasks.get(i).run();
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			invokeAll(new RangeAction(tasks, from, mid, cancelled), new RangeAction(tasks, mid, to, cancelled));
+		}
+	}
+}
@@ -0,0 +1,16 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.event;
+
+import org.caleydo.core.event.ADirectedEvent;
+
+/**
+ * @author Samuel Gratzl
+ *
+ */
+public class ToggleBandModeEvent extends ADirectedEvent {
+
+}
@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.caleydo.view.crossword.api.model.IIntIterator;
+import org.caleydo.view.crossword.internal.util.BitSetSet;
+import org.caleydo.view.crossword.internal.util.IIntSet;
+import org.caleydo.view.crossword.internal.util.IRankedIntSet;
+import org.caleydo.view.crossword.internal.util.ImmutableBitSetSet;
+import org.caleydo.view.crossword.internal.util.IntSetKernels;
+import org.caleydo.view.crossword.internal.util.RoaringSet;
+import org.caleydo.view.crossword.internal.util.SetRepresentations;
+import org.caleydo.view.crossword.internal.util.SortedIntSet;
+import org.caleydo.view.crossword.internal.util.SubsetIntSet;
+
+/**
+ * checks the set backends and the counting kernels against {@link BitSet} as reference, including empty sets, the
+ * array/bitmap boundary of 4096 values per chunk, run containers and mixed backends
+ *
+ * run with assertions enabled, fails with an {@link AssertionError}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public class SetKernelsTest {
+	private static final int CHUNK = 1 << 16;
+
+	private enum EBackend {
+		BITSET, IMMUTABLE_BITSET, SORTED, ROARING, HASH, BEST;
+
+		Set<Integer> create(BitSet ref) {
+			switch (this) {
+			case BITSET:
+				return new BitSetSet(ref);
+			case IMMUTABLE_BITSET:
+				return ImmutableBitSetSet.of(ref);
+			case SORTED:
+				return SortedIntSet.of(toSet(ref));
+			case ROARING:
+				return RoaringSet.of(toSet(ref));
+			case HASH:
+				return toSet(ref);
+			default:
+				return SetRepresentations.create(toArray(ref));
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		List<BitSet> cases = createCases(new Random(42));
+		// the sets of all cases per backend
+		final EBackend[] backends = EBackend.values();
+		List<Set<Integer>[]> sets = new ArrayList<>();
+		for (BitSet ref : cases) {
+			@SuppressWarnings("unchecked")
+			Set<Integer>[] s = new Set[backends.length];
+			for (EBackend backend : backends) {
+				s[backend.ordinal()] = backend.create(ref);
+				checkContent(backend + " " + describe(ref), ref, s[backend.ordinal()]);
+			}
+			sets.add(s);
+		}
+		checkRanked(cases);
+		checkPairwise(cases, sets);
+		checkThreeWay(cases, sets);
+		checkSubsets();
+		checkNegative();
+		System.out.println("SetKernelsTest: ok, " + SetRepresentations.getStatistics());
+	}
+
+	/**
+	 * @return reference sets covering the interesting container layouts
+	 */
+	private static List<BitSet> createCases(Random r) {
+		List<BitSet> cases = new ArrayList<>();
+		cases.add(new BitSet()); // empty
+
+		BitSet single = new BitSet();
+		single.set(0);
+		cases.add(single);
+
+		BitSet chunkBorder = new BitSet(); // last of the first and first of the second chunk
+		chunkBorder.set(CHUNK - 1, CHUNK + 1);
+		cases.add(chunkBorder);
+
+		BitSet array = new BitSet(); // exactly 4096 values in a chunk: largest array container
+		for (int i = 0; i < 4096; ++i)
+			array.set(CHUNK + i * 2);
+		cases.add(array);
+
+		BitSet bitmap = (BitSet) array.clone(); // one more: bitmap container
+		bitmap.set(CHUNK + 8193);
+		cases.add(bitmap);
+
+		BitSet runs = new BitSet(); // long runs spanning chunks: run containers
+		runs.set(CHUNK - 3000, CHUNK + 5000);
+		runs.set(3 * CHUNK, 3 * CHUNK + 4200);
+		cases.add(runs);
+		// 3 chunks with a single run each instead of ~24KB arrays and bitmaps
+		check(RoaringSet.of(toSet(runs)).getSizeInBytes() < 200, "runs", "run containers");
+
+		BitSet fragmented = new BitSet(); // many short runs
+		for (int i = 0; i < 2000; ++i)
+			fragmented.set(i * 20, i * 20 + 1 + r.nextInt(10));
+		cases.add(fragmented);
+
+		for (int k = 0; k < 6; ++k) {
+			BitSet random = new BitSet();
+			final int range = k % 2 == 0 ? 10000 : 4 * CHUNK;
+			for (int i = r.nextInt(6000); i > 0; --i)
+				random.set(r.nextInt(range));
+			if (k >= 4) // mixed: a run within random values
+				random.set(range / 2, range / 2 + 3000);
+			cases.add(random);
+		}
+		return cases;
+	}
+
+	private static void checkContent(String name, BitSet ref, Set<Integer> set) {
+		check(set.size() == ref.cardinality(), name, "size");
+		check(set.isEmpty() == ref.isEmpty(), name, "isEmpty");
+		for (int v = 0, to = ref.length() + 70; v < to; ++v)
+			check(set.contains(v) == ref.get(v), name, "contains " + v);
+		check(!set.contains(-1), name, "contains -1");
+		if (set instanceof HashSet) // no defined order
+			return;
+
+		Iterator<Integer> it = set.iterator();
+		for (int v = ref.nextSetBit(0); v >= 0; v = ref.nextSetBit(v + 1))
+			check(it.hasNext() && it.next().intValue() == v, name, "iterator at " + v);
+		check(!it.hasNext(), name, "iterator end");
+		if (!(set instanceof IIntSet))
+			return;
+		IIntSet s = (IIntSet) set;
+		check(!s.contains(ref.length()), name, "int contains");
+		IIntIterator iit = s.intIterator();
+		for (int v = ref.nextSetBit(0); v >= 0; v = ref.nextSetBit(v + 1))
+			check(iit.hasNext() && iit.nextInt() == v, name, "int iterator at " + v);
+		check(!iit.hasNext(), name, "int iterator end");
+		check(BitSet.valueOf(IntSetKernels.toWords(set)).equals(ref), name, "words");
+		int[] values = s.toIntArray();
+		check(values.length == ref.cardinality(), name, "array size");
+		for (int i = 0, v = ref.nextSetBit(0); v >= 0; v = ref.nextSetBit(v + 1))
+			check(values[i++] == v, name, "array at " + v);
+	}
+
+	/**
+	 * cheaper version of {@link #checkContent(String, BitSet, Set)} for the many combinations
+	 */
+	private static void checkValues(String name, BitSet ref, Set<Integer> set) {
+		int[] values = ((IIntSet) set).toIntArray();
+		check(values.length == ref.cardinality() && set.size() == values.length, name, "size");
+		for (int i = 0, v = ref.nextSetBit(0); v >= 0; v = ref.nextSetBit(v + 1))
+			check(values[i++] == v, name, "value " + v);
+	}
+
+	/**
+	 * rank/select of the sorted and bitset backends
+	 */
+	private static void checkRanked(List<BitSet> cases) {
+		for (BitSet ref : cases) {
+			for (EBackend backend : new EBackend[] { EBackend.SORTED, EBackend.IMMUTABLE_BITSET }) {
+				final String name = backend + " " + describe(ref);
+				IRankedIntSet s = (IRankedIntSet) backend.create(ref);
+				int rank = 0;
+				for (int v = 0, to = ref.length() + 1; v < to; ++v) {
+					if (!ref.get(v)) {
+						check(s.rank(v) == -1, name, "rank of missing " + v);
+						continue;
+					}
+					check(s.rank(v) == rank, name, "rank " + v);
+					check(s.select(rank) == v, name, "select " + rank);
+					rank++;
+				}
+			}
+		}
+	}
+
+	private static void checkPairwise(List<BitSet> cases, List<Set<Integer>[]> sets) {
+		for (int i = 0; i < cases.size(); ++i) {
+			for (int j = 0; j < cases.size(); ++j) {
+				final BitSet a = cases.get(i);
+				final BitSet b = cases.get(j);
+				final int and = and(a, b).cardinality();
+				final int or = or(a, b).cardinality();
+				for (EBackend ba : EBackend.values()) {
+					for (EBackend bb : EBackend.values()) {
+						final String name = ba + "/" + bb + " " + describe(a) + " " + describe(b);
+						Set<Integer> sa = sets.get(i)[ba.ordinal()];
+						Set<Integer> sb = sets.get(j)[bb.ordinal()];
+						check(IntSetKernels.andCardinality(sa, sb) == and, name, "and cardinality");
+						check(IntSetKernels.orCardinality(sa, sb) == or, name, "or cardinality");
+						check(IntSetKernels.andNotCardinality(sa, sb) == a.cardinality() - and, name,
+								"andNot cardinality");
+						if (ba.ordinal() < bb.ordinal() && sa instanceof IIntSet && sb instanceof IIntSet) {
+							checkValues(name + " and", and(a, b), IntSetKernels.and((IIntSet) sa, (IIntSet) sb));
+							checkValues(name + " or", or(a, b), IntSetKernels.or((IIntSet) sa, (IIntSet) sb));
+						}
+					}
+				}
+				// same backend operations
+				final String name = describe(a) + " " + describe(b);
+				RoaringSet ra = (RoaringSet) sets.get(i)[EBackend.ROARING.ordinal()];
+				RoaringSet rb = (RoaringSet) sets.get(j)[EBackend.ROARING.ordinal()];
+				checkContent("roaring and " + name, and(a, b), RoaringSet.and(ra, rb));
+				checkContent("roaring or " + name, or(a, b), RoaringSet.or(ra, rb));
+				checkContent("roaring andNot " + name, andNot(a, b), RoaringSet.andNot(ra, rb));
+				check(RoaringSet.andCardinality(ra, rb) == and, name, "roaring and cardinality");
+				check(RoaringSet.orCardinality(ra, rb) == or, name, "roaring or cardinality");
+				check(RoaringSet.andNotCardinality(ra, rb) == a.cardinality() - and, name,
+						"roaring andNot cardinality");
+
+				SortedIntSet sa = (SortedIntSet) sets.get(i)[EBackend.SORTED.ordinal()];
+				SortedIntSet sb = (SortedIntSet) sets.get(j)[EBackend.SORTED.ordinal()];
+				checkContent("sorted and " + name, and(a, b), SortedIntSet.and(sa, sb));
+				checkContent("sorted or " + name, or(a, b), SortedIntSet.or(sa, sb));
+				checkContent("sorted andNot " + name, andNot(a, b), SortedIntSet.andNot(sa, sb));
+				check(SortedIntSet.andCardinality(sa, sb) == and, name, "sorted and cardinality");
+
+				long[] wa = IntSetKernels.toWords(sets.get(i)[EBackend.IMMUTABLE_BITSET.ordinal()]);
+				long[] wb = IntSetKernels.toWords(sets.get(j)[EBackend.IMMUTABLE_BITSET.ordinal()]);
+				checkContent("bitset and " + name, and(a, b), ImmutableBitSetSet.and(wa, wb));
+				checkContent("bitset or " + name, or(a, b), ImmutableBitSetSet.or(wa, wb));
+				checkContent("bitset andNot " + name, andNot(a, b), ImmutableBitSetSet.andNot(wa, wb));
+			}
+		}
+	}
+
+	private static void checkThreeWay(List<BitSet> cases, List<Set<Integer>[]> sets) {
+		Random r = new Random(7);
+		final int backends = EBackend.values().length;
+		for (int k = 0; k < 2000; ++k) {
+			final int i = r.nextInt(cases.size()), j = r.nextInt(cases.size()), l = r.nextInt(cases.size());
+			final BitSet a = cases.get(i);
+			final BitSet b = cases.get(j);
+			final BitSet c = cases.get(l);
+			Set<Integer> sa = sets.get(i)[r.nextInt(backends)];
+			Set<Integer> sb = sets.get(j)[r.nextInt(backends)];
+			Set<Integer> sc = sets.get(l)[r.nextInt(backends)];
+			final String name = sa.getClass().getSimpleName() + "/" + sb.getClass().getSimpleName() + "/"
+					+ sc.getClass().getSimpleName() + " " + describe(a) + " " + describe(b) + " " + describe(c);
+			check(IntSetKernels.andCardinality(sa, sb, sc) == and(and(a, b), c).cardinality(), name, "3-way");
+			check(IntSetKernels.andCardinality(sa, sa, sc) == and(a, c).cardinality(), name, "3-way shared");
+		}
+	}
+
+	/**
+	 * subsets of a sparse parent are stored as {@link SubsetIntSet} views
+	 */
+	private static void checkSubsets() {
+		BitSet parentRef = new BitSet();
+		for (int i = 0; i < 1000; ++i)
+			parentRef.set(i * 1000);
+		for (EBackend backend : new EBackend[] { EBackend.SORTED, EBackend.IMMUTABLE_BITSET }) {
+			Set<Integer> parent = backend.create(parentRef);
+			BitSet evenRef = new BitSet();
+			BitSet thirdRef = new BitSet();
+			for (int i = 0; i < 1000; ++i) {
+				if (i % 2 == 0)
+					evenRef.set(i * 1000);
+				if (i % 3 == 0)
+					thirdRef.set(i * 1000);
+			}
+			Set<Integer> even = SetRepresentations.create(toArray(evenRef), parent);
+			Set<Integer> third = SetRepresentations.create(toArray(thirdRef), parent);
+			final String name = "subset of " + backend;
+			check(even instanceof SubsetIntSet && ((SubsetIntSet) even).getParent() == parent, name, "backend");
+			checkContent(name, evenRef, even);
+			checkContent(name, thirdRef, third);
+			check(IntSetKernels.andCardinality(even, parent) == evenRef.cardinality(), name, "and parent");
+			check(IntSetKernels.andCardinality(even, third) == and(evenRef, thirdRef).cardinality(), name,
+					"and sibling");
+			check(IntSetKernels.andCardinality(even, third, parent) == and(evenRef, thirdRef).cardinality(), name,
+					"3-way with parent");
+
+			BitSet outsideRef = (BitSet) evenRef.clone(); // not a subset: standalone backend
+			outsideRef.set(1);
+			Set<Integer> outside = SetRepresentations.create(toArray(outsideRef), parent);
+			check(!(outside instanceof SubsetIntSet), name, "not a subset");
+			checkContent(name + " outside", outsideRef, outside);
+		}
+		check(SetRepresentations.create(new int[0], SortedIntSet.EMPTY).isEmpty(), "subset", "empty");
+	}
+
+	/**
+	 * just the sorted backend supports negative values
+	 */
+	private static void checkNegative() {
+		Set<Integer> s = SetRepresentations.create(new int[] { -5, -1, 3 });
+		check(s.size() == 3 && s.contains(-5) && s.contains(-1) && s.contains(3) && !s.contains(0), "negative",
+				"content");
+		check(!RoaringSet.of(toSet(new BitSet())).contains(-1), "negative", "roaring contains");
+		boolean failed = false;
+		try {
+			RoaringSet.of(s);
+		} catch (IllegalArgumentException e) {
+			failed = true;
+		}
+		check(failed, "negative", "roaring rejects");
+	}
+
+	private static BitSet and(BitSet a, BitSet b) {
+		BitSet r = (BitSet) a.clone();
+		r.and(b);
+		return r;
+	}
+
+	private static BitSet or(BitSet a, BitSet b) {
+		BitSet r = (BitSet) a.clone();
+		r.or(b);
+		return r;
+	}
+
+	private static BitSet andNot(BitSet a, BitSet b) {
+		BitSet r = (BitSet) a.clone();
+		r.andNot(b);
+		return r;
+	}
+
+	private static Set<Integer> toSet(BitSet ref) {
+		Set<Integer> r = new HashSet<>(ref.cardinality() * 2);
+		for (int v = ref.nextSetBit(0); v >= 0; v = ref.nextSetBit(v + 1))
+			r.add(v);
+		return r;
+	}
+
+	private static int[] toArray(BitSet ref) {
+		int[] r = new int[ref.cardinality()];
+		int i = 0;
+		for (int v = ref.nextSetBit(0); v >= 0; v = ref.nextSetBit(v + 1))
+			r[i++] = v;
+		return r;
+	}
+
+	private static String describe(BitSet ref) {
+		return "[" + ref.cardinality() + " of " + ref.length() + "]";
+	}
+
+	private static void check(boolean condition, String name, String what) {
+		if (!condition)
+			throw new AssertionError(name + ": " + what);
+	}
+}
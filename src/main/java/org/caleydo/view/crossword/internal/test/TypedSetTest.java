@@ -0,0 +1,303 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.caleydo.core.data.collection.EDataClass;
+import org.caleydo.core.id.IDCategory;
+import org.caleydo.core.id.IDType;
+import org.caleydo.view.crossword.api.model.IIntIterator;
+import org.caleydo.view.crossword.api.model.TypedSet;
+import org.caleydo.view.crossword.api.model.TypedSetDelta;
+import org.caleydo.view.crossword.api.model.TypedSetFragments;
+import org.caleydo.view.crossword.internal.util.Fingerprints;
+import org.caleydo.view.crossword.internal.util.IDDictionary;
+import org.caleydo.view.crossword.internal.util.SetRepresentations;
+
+/**
+ * checks the {@link TypedSet} operations within and across {@link IDDictionary}s, {@link TypedSetDelta},
+ * {@link TypedSetFragments} and {@link Fingerprints} against {@link TreeSet}s as reference
+ *
+ * run with assertions enabled, fails with an {@link AssertionError}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public class TypedSetTest {
+	private static final IDCategory CATEGORY = IDCategory.registerCategory("CROSSWORD_TEST");
+	private static final IDType ID_TYPE = IDType.registerType("CROSSWORD_TEST_ID", CATEGORY,
+			EDataClass.NATURAL_NUMBER);
+
+	/**
+	 * the ways to store a set of ids
+	 */
+	private enum EForm {
+		RAW, DICTIONARY, OTHER_DICTIONARY
+	}
+
+	private static IDDictionary dictionary;
+	private static IDDictionary otherDictionary;
+
+	public static void main(String[] args) {
+		checkDictionary();
+
+		// two instances of the same category, as after releasing and acquiring it again
+		otherDictionary = IDDictionary.acquire(CATEGORY);
+		IDDictionary.release(CATEGORY);
+		dictionary = IDDictionary.acquire(CATEGORY);
+		check(dictionary != otherDictionary, "dictionary", "new instance after release");
+
+		Random r = new Random(42);
+		List<TreeSet<Integer>> refs = createCases(r);
+		checkOperations(refs);
+		checkDeltas(refs, r);
+		checkFragments(r);
+		checkFingerprints(refs, r);
+		IDDictionary.release(CATEGORY);
+		System.out.println("TypedSetTest: ok");
+	}
+
+	private static void checkDictionary() {
+		IDDictionary d = IDDictionary.acquire(CATEGORY);
+		check(IDDictionary.get(CATEGORY) == d, "dictionary", "shared");
+		int[] ordinals = d.encode(Arrays.asList(50, 7, 50, 1000000));
+		check(ordinals.length == 3 && d.size() == 3, "dictionary", "duplicates");
+		for (int i = 1; i < ordinals.length; ++i)
+			check(ordinals[i - 1] < ordinals[i], "dictionary", "sorted ordinals");
+		for (int id : new int[] { 7, 50, 1000000 })
+			check(d.toId(d.toOrdinal(id)) == id, "dictionary", "round trip " + id);
+		check(d.toOrdinal(8) == -1 && d.toOrdinal(-1) == -1, "dictionary", "unknown ids");
+		check(Arrays.equals(d.encode(Arrays.asList(7, 50, 1000000)), ordinals), "dictionary", "stable ordinals");
+		check(d.encode(Collections.<Integer> emptyList()).length == 0, "dictionary", "empty");
+		boolean failed = false;
+		try {
+			d.encode(Arrays.asList(-5, 3));
+		} catch (IllegalArgumentException e) {
+			failed = true;
+		}
+		check(failed, "dictionary", "rejects negative ids");
+
+		// reference counted
+		check(IDDictionary.acquire(CATEGORY) == d, "dictionary", "acquire again");
+		IDDictionary.release(CATEGORY);
+		check(IDDictionary.get(CATEGORY) == d, "dictionary", "still referenced");
+		IDDictionary.release(CATEGORY);
+		check(IDDictionary.get(CATEGORY) != d, "dictionary", "dropped");
+	}
+
+	private static List<TreeSet<Integer>> createCases(Random r) {
+		List<TreeSet<Integer>> refs = new ArrayList<>();
+		refs.add(new TreeSet<Integer>()); // empty
+		refs.add(new TreeSet<Integer>(Arrays.asList(0)));
+		TreeSet<Integer> range = new TreeSet<>();
+		for (int i = 500; i < 5000; ++i)
+			range.add(i);
+		refs.add(range);
+		for (int k = 0; k < 8; ++k) {
+			TreeSet<Integer> random = new TreeSet<>();
+			final int bound = k % 2 == 0 ? 3000 : 2000000; // dense and sparse ids
+			for (int i = r.nextInt(2000); i > 0; --i)
+				random.add(r.nextInt(bound));
+			refs.add(random);
+		}
+		return refs;
+	}
+
+	private static TypedSet create(Set<Integer> ref, EForm form) {
+		switch (form) {
+		case RAW:
+			int[] ids = new int[ref.size()];
+			int i = 0;
+			for (Integer id : ref)
+				ids[i++] = id.intValue();
+			return new TypedSet(SetRepresentations.create(ids), ID_TYPE);
+		case DICTIONARY:
+			return new TypedSet(SetRepresentations.create(dictionary.encode(ref)), ID_TYPE, dictionary);
+		default:
+			return new TypedSet(SetRepresentations.create(otherDictionary.encode(ref)), ID_TYPE, otherDictionary);
+		}
+	}
+
+	private static void checkOperations(List<TreeSet<Integer>> refs) {
+		for (TreeSet<Integer> ra : refs) {
+			for (TreeSet<Integer> rb : refs) {
+				TreeSet<Integer> and = new TreeSet<>(ra);
+				and.retainAll(rb);
+				TreeSet<Integer> or = new TreeSet<>(ra);
+				or.addAll(rb);
+				for (EForm fa : EForm.values()) {
+					for (EForm fb : EForm.values()) {
+						final String name = fa + "/" + fb + " " + ra.size() + " " + rb.size();
+						TypedSet a = create(ra, fa);
+						TypedSet b = create(rb, fb);
+						checkContent(name, ra, a);
+						check(a.and(b) == and.size(), name, "and");
+						check(a.or(b) == or.size(), name, "or");
+						check(a.without(b) == ra.size() - and.size(), name, "without");
+						check(new TreeSet<>(a.intersect(b)).equals(and), name, "intersect");
+						check(new TreeSet<>(a.union(b)).equals(or), name, "union");
+						check(a.equals(b) == ra.equals(rb), name, "equals");
+						check(!ra.equals(rb) || a.hashCode() == b.hashCode(), name, "hashCode");
+						for (EForm fc : EForm.values()) {
+							TypedSet c = create(rb, fc);
+							check(a.and(b, c) == and.size(), name + "/" + fc, "3-way");
+							check(a.and(a, c) == and.size(), name + "/" + fc, "3-way shared");
+						}
+					}
+				}
+			}
+		}
+		// subsets by ordinals
+		TypedSet parent = create(refs.get(refs.size() - 1), EForm.DICTIONARY);
+		int[] values = parent.toIntArray();
+		TreeSet<Integer> ref = new TreeSet<>();
+		int[] ordinals = new int[(values.length + 1) / 2];
+		for (int i = 0; i < values.length; i += 2) {
+			ref.add(values[i]);
+			ordinals[i / 2] = dictionary.toOrdinal(values[i]);
+		}
+		Arrays.sort(ordinals);
+		checkContent("subset", ref, parent.createSubset(ordinals));
+	}
+
+	private static void checkContent(String name, TreeSet<Integer> ref, TypedSet set) {
+		check(set.size() == ref.size() && set.isEmpty() == ref.isEmpty(), name, "size");
+		for (Integer id : ref)
+			check(set.contains(id.intValue()) && set.contains(id), name, "contains " + id);
+		check(!set.contains(-1) && !set.contains(Integer.MAX_VALUE), name, "contains missing");
+		check(new TreeSet<>(set).equals(ref), name, "iterator");
+		TreeSet<Integer> primitive = new TreeSet<>();
+		for (IIntIterator it = set.intIterator(); it.hasNext();)
+			primitive.add(it.nextInt());
+		check(primitive.equals(ref), name, "int iterator");
+		int[] values = set.toIntArray();
+		Arrays.sort(values);
+		check(values.length == ref.size(), name, "array size");
+		int i = 0;
+		for (Integer id : ref)
+			check(values[i++] == id.intValue(), name, "array at " + id);
+	}
+
+	private static void checkDeltas(List<TreeSet<Integer>> refs, Random r) {
+		for (TreeSet<Integer> ref : refs) {
+			for (EForm form : EForm.values()) {
+				TypedSet from = create(ref, form);
+				// small changes: remove and add a few ids
+				TreeSet<Integer> changed = new TreeSet<>(ref);
+				for (int i = 0; i < 5 && !changed.isEmpty(); ++i)
+					changed.remove(changed.first());
+				for (int i = 0; i < 5; ++i)
+					changed.add(r.nextInt(5000));
+				TypedSet to = create(changed, form);
+				final String name = "delta " + form + " " + ref.size();
+
+				TypedSetDelta delta = TypedSetDelta.between(from, to);
+				TreeSet<Integer> added = new TreeSet<>(changed);
+				added.removeAll(ref);
+				TreeSet<Integer> removed = new TreeSet<>(ref);
+				removed.removeAll(changed);
+				check(delta != null && delta.getFrom() == from && delta.getTo() == to, name, "created");
+				check(delta.size() == added.size() + removed.size(), name, "size");
+				check(delta.isEmpty() == (added.isEmpty() && removed.isEmpty()), name, "isEmpty");
+				check(TypedSetDelta.between(from, from).isEmpty(), name, "identity");
+
+				for (TreeSet<Integer> otherRef : refs) {
+					TypedSet other = create(otherRef, form);
+					check(delta.isCompatible(other), name, "compatible");
+					check(delta.and(other, from.and(other)) == to.and(other), name, "incremental and");
+				}
+				EForm otherForm = form == EForm.RAW ? EForm.DICTIONARY : EForm.RAW;
+				check(!delta.isCompatible(create(ref, otherForm)), name, "incompatible");
+				check(TypedSetDelta.between(from, create(changed, otherForm)) == null, name, "not comparable");
+			}
+		}
+	}
+
+	/**
+	 * compares the fragments against counting the membership mask of every id, including sets of different
+	 * dictionaries
+	 */
+	private static void checkFragments(Random r) {
+		for (int it = 0; it < 200; ++it) {
+			final int k = 1 + r.nextInt(it % 2 == 0 ? 6 : 20);
+			List<TreeSet<Integer>> refs = new ArrayList<>();
+			List<TypedSet> sets = new ArrayList<>();
+			for (int j = 0; j < k; ++j) {
+				TreeSet<Integer> ref = new TreeSet<>();
+				for (int i = r.nextInt(500); i > 0; --i)
+					ref.add(r.nextInt(2000));
+				refs.add(ref);
+				sets.add(create(ref, it % 4 == 3 ? EForm.values()[r.nextInt(3)] : EForm.DICTIONARY));
+			}
+			final String name = "fragments " + it;
+			Map<Integer, Integer> expected = new TreeMap<>();
+			TreeSet<Integer> all = new TreeSet<>();
+			for (TreeSet<Integer> ref : refs)
+				all.addAll(ref);
+			for (Integer id : all) {
+				int mask = 0;
+				for (int j = 0; j < k; ++j)
+					if (refs.get(j).contains(id))
+						mask |= 1 << j;
+				Integer c = expected.get(mask);
+				expected.put(mask, c == null ? 1 : c + 1);
+			}
+			TypedSetFragments f = TypedSetFragments.of(ID_TYPE, sets);
+			check(f.size() == expected.size(), name, "size");
+			for (int i = 0; i < f.size(); ++i)
+				check(expected.get(f.getMask(i)).intValue() == f.getCardinality(i), name, "cardinality");
+			for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+				final int mask = entry.getKey();
+				check(f.getExclusiveCardinality(mask) == entry.getValue(), name, "exclusive cardinality");
+				check(f.getExclusive(mask).size() == entry.getValue(), name, "exclusive");
+			}
+			check(f.maskOf(sets.get(0)) == 1, name, "mask");
+
+			final int mask = 1 + r.nextInt((1 << Math.min(k, 10)) - 1);
+			TreeSet<Integer> shared = new TreeSet<>(all);
+			for (int j = 0; j < k; ++j)
+				if ((mask & (1 << j)) != 0)
+					shared.retainAll(refs.get(j));
+			check(new TreeSet<>(f.getShared(mask)).equals(shared), name, "shared");
+			check(f.getSharedCardinality(mask) == shared.size(), name, "shared cardinality");
+		}
+	}
+
+	/**
+	 * the fingerprints are independent of the order, the backend and the dictionary
+	 */
+	private static void checkFingerprints(List<TreeSet<Integer>> refs, Random r) {
+		for (TreeSet<Integer> ref : refs) {
+			List<Integer> shuffled = new ArrayList<>(ref);
+			Collections.shuffle(shuffled, r);
+			final long expected = Fingerprints.of(ref);
+			final String name = "fingerprint " + ref.size();
+			check(Fingerprints.of(shuffled) == expected, name, "order");
+			for (EForm form : EForm.values())
+				check(create(ref, form).getFingerprint() == expected, name, form.toString());
+			if (ref.isEmpty())
+				continue;
+			TreeSet<Integer> other = new TreeSet<>(ref);
+			other.remove(other.first());
+			other.add(other.isEmpty() ? 1 : other.last() + 1);
+			check(Fingerprints.of(other) != expected, name, "changed content");
+		}
+	}
+
+	private static void check(boolean condition, String name, String what) {
+		if (!condition)
+			throw new AssertionError(name + ": " + what);
+	}
+}
@@ -22,9 +22,12 @@ import org.caleydo.core.view.opengl.picking.IPickingLabelProvider;
 import org.caleydo.core.view.opengl.picking.IPickingListener;
 import org.caleydo.core.view.opengl.picking.Pick;
 import org.caleydo.core.view.opengl.picking.PickingListenerComposite;
+import org.caleydo.view.crossword.api.model.IIntIterator;
 import org.caleydo.view.crossword.api.model.TypedSet;
+import org.caleydo.view.crossword.api.model.TypedSetFragments;
 import org.caleydo.view.crossword.api.ui.CrosswordMultiElement;
 import org.caleydo.view.crossword.spi.model.IBandRenderer;
+import org.caleydo.view.crossword.spi.model.IBandRenderer.EBandMode;
 import org.caleydo.view.crossword.spi.model.IBandRenderer.IBandHost;
 
 /**
@@ -86,7 +89,7 @@ public class CrosswordBandLayer extends GLElement implements MultiSelectionManag
 	private void clear(IBandRenderer route, SelectionType type) {
 		if (route == null)
 			return;
-		SelectionManager manager = selections.get(route.getIds().getIdType());
+		SelectionManager manager = selections.get(route.getIdType());
 		if (manager == null)
 			return;
 		manager.clearSelection(type);
@@ -105,7 +108,8 @@ public class CrosswordBandLayer extends GLElement implements MultiSelectionManag
 		SelectionManager manager = getOrCreate(route.getIdType());
 		if (clear)
 			manager.clearSelection(type);
-		manager.addToType(type, route.getIds());
+		for (IIntIterator it = route.getIds().intIterator(); it.hasNext();)
+			manager.addToType(type, it.nextInt());
 		selections.fireSelectionDelta(manager);
 	}
 
@@ -143,20 +147,40 @@ public class CrosswordBandLayer extends GLElement implements MultiSelectionManag
 		return getMultiElement().getBandRoutes();
 	}
 
+	@Override
+	public EBandMode getBandMode(IDType idType) {
+		EBandMode mode = getMultiElement().getBandMode();
+		if (mode == EBandMode.FRAGMENT && getFragments(idType) == null)
+			return EBandMode.PAIRWISE; // too few or too many sets for the fragments
+		return mode;
+	}
+
+	@Override
+	public TypedSetFragments getFragments(IDType idType) {
+		return getMultiElement().getFragments(idType);
+	}
+
 	@Override
 	public IGLElementContext getContext() {
 		return context;
 	}
 
 	@Override
-	public int getSelected(TypedSet ids, SelectionType type) {
-		if (ids.isEmpty())
+	public int getSelected(TypedSet source, TypedSet target, SelectionType type) {
+		if (source.isEmpty() || target.isEmpty())
 			return 0;
-		SelectionManager manager = getOrCreate(ids.getIdType());
+		SelectionManager manager = getOrCreate(source.getIdType());
 		Set<Integer> active = manager.getElements(type);
 		if (active.isEmpty())
 			return 0;
-		return ids.and(new TypedSet(active, ids.getIdType()));
+		// selection boundary: the active ids are translated into the dictionary space of the band ids
+		return source.and(target, new TypedSet(active, source.getIdType()));
+	}
+
+	@Override
+	public boolean hasSelected(IDType idType, SelectionType type) {
+		SelectionManager manager = selections.get(idType);
+		return manager != null && !manager.getElements(type).isEmpty();
 	}
 
 	/**
@@ -7,15 +7,17 @@ package org.caleydo.view.crossword.internal.ui;
 
 import static org.caleydo.core.view.opengl.layout2.animation.Transitions.LINEAR;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.caleydo.core.data.collection.EDimension;
-import org.caleydo.core.data.collection.table.Table;
 import org.caleydo.core.data.perspective.table.TablePerspective;
 import org.caleydo.core.data.perspective.variable.Perspective;
 import org.caleydo.core.data.selection.SelectionManager;
 import org.caleydo.core.data.selection.TablePerspectiveSelectionMixin;
-import org.caleydo.core.data.virtualarray.VirtualArray;
 import org.caleydo.core.event.EventListenerManager.DeepScan;
 import org.caleydo.core.event.EventListenerManager.ListenTo;
 import org.caleydo.core.event.EventPublisher;
@@ -50,19 +52,22 @@ import org.caleydo.core.view.opengl.picking.IPickingListener;
 import org.caleydo.core.view.opengl.picking.Pick;
 import org.caleydo.view.crossword.api.model.TablePerspectiveMetaData;
 import org.caleydo.view.crossword.api.model.TypedSet;
+import org.caleydo.view.crossword.api.model.TypedSetDelta;
 import org.caleydo.view.crossword.api.ui.CrosswordMultiElement;
+import org.caleydo.view.crossword.internal.concurrent.CrosswordExecutor;
 import org.caleydo.view.crossword.internal.event.ChangePerspectiveEvent;
 import org.caleydo.view.crossword.internal.ui.dialogs.ChangePerspectiveDialog;
 import org.caleydo.view.crossword.internal.ui.menu.PerspectiveMenuElement;
 import org.caleydo.view.crossword.internal.ui.menu.SwitcherMenuElement;
-import org.caleydo.view.crossword.internal.util.BitSetSet;
+import org.caleydo.view.crossword.internal.util.Fingerprints;
+import org.caleydo.view.crossword.internal.util.IDConversionCache;
 import org.caleydo.view.crossword.spi.config.ElementConfig;
 import org.eclipse.swt.SWT;
 
 import com.google.common.base.Predicates;
 import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSortedSet;
 
 /**
  * the root element of this view holding a {@link TablePerspective}
@@ -86,6 +91,20 @@ public class CrosswordElement extends AnimatedGLElementContainer implements
 	private TypedSet dimensionIds;
 	private final IIDTypeMapper<Integer, Integer> dimension2primary;
 
+	/**
+	 * the last converted perspectives and the order independent fingerprints of their ids, to detect whether a VA
+	 * update changed the membership at all
+	 */
+	private Perspective lastRecord;
+	private long lastRecordFingerprint;
+	private Perspective lastDimension;
+	private long lastDimensionFingerprint;
+
+	/**
+	 * the running background conversion of the ids, will be applied on the next frame, see {@link #layout(int)}
+	 */
+	private Future<IDsUpdate> pendingIDs;
+
 	@DeepScan
 	private final CrosswordLayoutInfo info;
 
@@ -93,6 +112,12 @@ public class CrosswordElement extends AnimatedGLElementContainer implements
 
 	private final TablePerspectiveMetaData metaData;
 
+	/**
+	 * the element this one was split off or <code>null</code>, its ids are a superset of the ones of this element, see
+	 * {@link IDConversionCache#convert(Perspective, List, long, IIDTypeMapper, TypedSet)}
+	 */
+	private final CrosswordElement splitParent;
+
 	public CrosswordElement(TablePerspective tablePerspective, TablePerspectiveMetaData metaData, ElementConfig config) {
 		this(tablePerspective, metaData, config, null);
 	}
@@ -102,6 +127,7 @@ public class CrosswordElement extends AnimatedGLElementContainer implements
 		this.selection = new TablePerspectiveSelectionMixin(tablePerspective, this);
 		this.info = new CrosswordLayoutInfo(this, config);
 		this.metaData = metaData;
+		this.splitParent = parent;
 
 		this.onPick(this);
 		this.setVisibility(EVisibility.PICKABLE);
@@ -118,6 +144,9 @@ public class CrosswordElement extends AnimatedGLElementContainer implements
 			record2primary = resolvePrimaryMapper(tablePerspective.getRecordPerspective().getIdType());
 			dimension2primary = resolvePrimaryMapper(tablePerspective.getDimensionPerspective().getIdType());
 		}
+		// placeholders till the background conversion is done
+		recordIds = IDConversionCache.empty(record2primary);
+		dimensionIds = IDConversionCache.empty(dimension2primary);
 
 		switcher.onActiveChanged(info);
 		this.add(switcher);
@@ -190,25 +219,6 @@ public class CrosswordElement extends AnimatedGLElementContainer implements
 		relayoutParent();
 	}
 
-	/**
-	 * convert the ids in a perspective to a set
-	 *
-	 * @param set
-	 * @param perspective
-	 */
-	private TypedSet convert(Perspective perspective, int total, IIDTypeMapper<Integer, Integer> mapper) {
-		VirtualArray va = perspective.getVirtualArray();
-		Set<Integer> ids = mapper.apply(va.getIDs());
-		int size = va.size();
-		if (size == 0)
-			return new TypedSet(ImmutableSortedSet.<Integer> of(), mapper.getTarget());
-		if (size < total / 4) { // less than 25% -> use ordinary instead of BitSet
-			return new TypedSet(ImmutableSortedSet.copyOf(ids), mapper.getTarget());
-		} else { // use BitSet
-			return new TypedSet(new BitSetSet(ids), mapper.getTarget());
-		}
-	}
-
 	/**
 	 * @param type
 	 * @return
@@ -223,6 +233,13 @@ public class CrosswordElement extends AnimatedGLElementContainer implements
 		throw new IllegalStateException();
 	}
 
+	/**
+	 * @return whether a background conversion of the ids is running, see {@link #pendingIDs}
+	 */
+	public boolean isConverting() {
+		return pendingIDs != null;
+	}
+
 	private static GLElement animated(boolean hor, boolean vert, GLElement elem) {
 		ITransition horT = hor ? LINEAR : Transitions.NO;
 		ITransition verT = vert ? LINEAR : Transitions.NO;
@@ -332,17 +349,132 @@ public class CrosswordElement extends AnimatedGLElementContainer implements
 
 	@Override
 	public void onVAUpdate(TablePerspective tablePerspective) {
-		relayout();
+		CrosswordExecutor.cancel(pendingIDs); // superseded
+		// snapshot the ids, the rest is done in the background
+		final Perspective record = tablePerspective.getRecordPerspective();
+		final Perspective dimension = tablePerspective.getDimensionPerspective();
+		final List<Integer> recordSnapshot = new ArrayList<>(record.getVirtualArray().getIDs());
+		final List<Integer> dimensionSnapshot = new ArrayList<>(dimension.getVirtualArray().getIDs());
+		final boolean sameRecord = record == lastRecord;
+		final long oldRecordFingerprint = lastRecordFingerprint;
+		final boolean sameDimension = dimension == lastDimension;
+		final long oldDimensionFingerprint = lastDimensionFingerprint;
+		final TypedSet recordParent = splitParent == null ? null : splitParent.recordIds;
+		final TypedSet dimensionParent = splitParent == null ? null : splitParent.dimensionIds;
+		final TypedSet oldRecordIds = recordIds;
+		final TypedSet oldDimensionIds = dimensionIds;
+
+		pendingIDs = CrosswordExecutor.submit(new Callable<IDsUpdate>() {
+			@Override
+			public IDsUpdate call() {
+				IDsUpdate u = new IDsUpdate(record, Fingerprints.of(recordSnapshot), dimension,
+						Fingerprints.of(dimensionSnapshot));
+				if (sameRecord && sameDimension && u.recordFingerprint == oldRecordFingerprint
+						&& u.dimensionFingerprint == oldDimensionFingerprint)
+					return u; // just reordered or regrouped, nothing to do
+				u.recordIds = IDConversionCache.convert(record, recordSnapshot, u.recordFingerprint, record2primary,
+						recordParent);
+				if (Thread.currentThread().isInterrupted())
+					return null;
+				u.dimensionIds = IDConversionCache.convert(dimension, dimensionSnapshot, u.dimensionFingerprint,
+						dimension2primary, dimensionParent);
+				if (Thread.currentThread().isInterrupted())
+					return null;
+				// the deltas are O(n), so compute them here and not on the render thread
+				u.recordDelta = TypedSetDelta.between(oldRecordIds, u.recordIds);
+				u.dimensionDelta = TypedSetDelta.between(oldDimensionIds, u.dimensionIds);
+				return u;
+			}
+		});
+	}
+
+	@Override
+	public void layout(int deltaTimeMs) {
+		applyPendingIDs();
+		super.layout(deltaTimeMs);
+	}
 
-		Table table = tablePerspective.getDataDomain().getTable();
-		final int nrRecords = table.depth();
-		final int nrDimensions = table.size();
-		recordIds = convert(tablePerspective.getRecordPerspective(), nrRecords, record2primary);
-		dimensionIds = convert(tablePerspective.getDimensionPerspective(), nrDimensions, dimension2primary);
+	/**
+	 * swaps in the result of a finished background conversion
+	 */
+	private void applyPendingIDs() {
+		if (pendingIDs == null || !pendingIDs.isDone())
+			return;
+		IDsUpdate u;
+		try {
+			u = pendingIDs.isCancelled() ? null : pendingIDs.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw Throwables.propagate(e.getCause() == null ? e : e.getCause());
+		} finally {
+			pendingIDs = null;
+		}
+		if (u == null) { // interrupted, retry
+			onVAUpdate(getTablePerspective());
+			return;
+		}
+		lastRecord = u.record;
+		lastRecordFingerprint = u.recordFingerprint;
+		lastDimension = u.dimension;
+		lastDimensionFingerprint = u.dimensionFingerprint;
+		if (u.recordIds == null) // unchanged membership
+			return;
+
+		final TypedSet oldRecordIds = recordIds;
+		final TypedSet oldDimensionIds = dimensionIds;
+		recordIds = u.recordIds;
+		dimensionIds = u.dimensionIds;
+		if (recordIds == oldRecordIds && dimensionIds == oldDimensionIds) // interned, so same membership
+			return;
+		relayout();
 
 		CrosswordMultiElement p = getMultiElement();
 		if (p != null)
-			p.onConnectionsChanged(this);
+			p.onConnectionsChanged(this, deltaFrom(u.recordDelta, oldRecordIds),
+					deltaFrom(u.dimensionDelta, oldDimensionIds));
+	}
+
+	/**
+	 * @return the given delta if it starts at the given version, otherwise <code>null</code>, i.e. unknown
+	 */
+	private static TypedSetDelta deltaFrom(TypedSetDelta delta, TypedSet from) {
+		return delta != null && delta.getFrom() == from ? delta : null;
+	}
+
+	@Override
+	protected void takeDown() {
+		CrosswordExecutor.cancel(pendingIDs);
+		pendingIDs = null;
+		super.takeDown();
+	}
+
+	/**
+	 * result of a background conversion
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	private static final class IDsUpdate {
+		private final Perspective record;
+		private final long recordFingerprint;
+		private final Perspective dimension;
+		private final long dimensionFingerprint;
+		/**
+		 * the converted ids or <code>null</code> if the membership didn't change
+		 */
+		private TypedSet recordIds;
+		private TypedSet dimensionIds;
+		/**
+		 * the changes relative to the ids at the time of the submission or <code>null</code> if not comparable
+		 */
+		private TypedSetDelta recordDelta;
+		private TypedSetDelta dimensionDelta;
+
+		public IDsUpdate(Perspective record, long recordFingerprint, Perspective dimension, long dimensionFingerprint) {
+			this.record = record;
+			this.recordFingerprint = recordFingerprint;
+			this.dimension = dimension;
+			this.dimensionFingerprint = dimensionFingerprint;
+		}
 	}
 
 	@Override
@@ -363,6 +495,10 @@ public class CrosswordElement extends AnimatedGLElementContainer implements
 			parent.splitRec(this);
 			((PerspectiveMenuElement) get(4)).setTablePerspective(getTablePerspective(), this);
 			break;
+		case "Expand X":
+		case "Expand Y":
+			parent.expand(this);
+			break;
 		case "Change Perspective X":
 			context.getSWTLayer().run(
 					new ChangePerspectiveDialog(getTablePerspective().getDimensionPerspective(), this));
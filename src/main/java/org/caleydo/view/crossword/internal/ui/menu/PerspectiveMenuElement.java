@@ -60,6 +60,8 @@ public class PerspectiveMenuElement extends GLElementContainer {
 		if (perspective.getVirtualArray().getGroupList().size() > 1 && !metaData.isSplitted() && config.canSplit(dim)) {
 			addButton("Split " + suffix, Resources.splitPerspective(), callback);
 		}
+		if (metaData.isAggregated())
+			addButton("Expand " + suffix, Resources.splitPerspective(), callback);
 		if (!metaData.isChild() && !metaData.isSplitted() && config.canChange(dim))
 			addButton("Change Perspective " + suffix, Resources.choosePerspective(), callback);
 		repaint();
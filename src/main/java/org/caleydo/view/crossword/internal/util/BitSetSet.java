@@ -8,8 +8,12 @@ package org.caleydo.view.crossword.internal.util;
 import java.util.AbstractSet;
 import java.util.BitSet;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+import org.caleydo.view.crossword.api.model.IIntConsumer;
+import org.caleydo.view.crossword.api.model.IIntIterator;
+
 import com.google.common.base.Preconditions;
 
 /**
@@ -18,8 +22,12 @@ import com.google.common.base.Preconditions;
  * @author Samuel Gratzl
  *
  */
-public class BitSetSet extends AbstractSet<Integer> {
+public class BitSetSet extends AbstractSet<Integer> implements IIntSet {
 	private final BitSet bitSet;
+	/**
+	 * cached word representation of the {@link #bitSet} for the counting kernels, invalidated on modification
+	 */
+	private long[] words;
 
 	public BitSetSet() {
 		this(new BitSet());
@@ -31,21 +39,28 @@ public class BitSetSet extends AbstractSet<Integer> {
 	}
 
 	/**
-	 * @param clone
+	 * @param bitSet
+	 *            the initial content, which will be copied such that the {@link #words} can't get stale
 	 */
 	public BitSetSet(BitSet bitSet) {
-		this.bitSet = bitSet;
+		this.bitSet = (BitSet) bitSet.clone();
 	}
 
 	@Override
 	public boolean contains(Object o) {
 		if (!(o instanceof Integer))
 			return false;
-		return bitSet.get(((Integer) o).intValue());
+		return contains(((Integer) o).intValue());
+	}
+
+	@Override
+	public boolean contains(int v) {
+		return v >= 0 && bitSet.get(v);
 	}
 
 	@Override
 	public void clear() {
+		words = null;
 		bitSet.clear();
 	}
 
@@ -58,6 +73,7 @@ public class BitSetSet extends AbstractSet<Integer> {
 	public boolean remove(Object o) {
 		if (!contains(o))
 			return false;
+		words = null;
 		bitSet.clear(((Integer) o).intValue());
 		return true;
 	}
@@ -67,15 +83,25 @@ public class BitSetSet extends AbstractSet<Integer> {
 		Preconditions.checkNotNull(e);
 		if (contains(e))
 			return false;
+		words = null;
 		bitSet.set(e.intValue());
 		return true;
 	}
 
 	/**
-	 * @return the bitSet, see {@link #bitSet}
+	 * @return a copy of the bitSet, see {@link #bitSet}, as modifications must be done through this set
+	 */
+	public BitSet toBitSet() {
+		return (BitSet) bitSet.clone();
+	}
+
+	/**
+	 * @return the words of the {@link #bitSet}, not to be modified
 	 */
-	public BitSet getBitSet() {
-		return bitSet;
+	long[] words() {
+		if (words == null)
+			words = bitSet.toLongArray();
+		return words;
 	}
 
 	@Override
@@ -85,6 +111,7 @@ public class BitSetSet extends AbstractSet<Integer> {
 
 			@Override
 			public void remove() {
+				words = null;
 				bitSet.clear(bitSet.previousSetBit(i - 1));
 			}
 
@@ -102,6 +129,42 @@ public class BitSetSet extends AbstractSet<Integer> {
 		};
 	}
 
+	@Override
+	public IIntIterator intIterator() {
+		return new IIntIterator() {
+			int i = bitSet.nextSetBit(0);
+
+			@Override
+			public int nextInt() {
+				if (i < 0)
+					throw new NoSuchElementException();
+				int bak = i;
+				i = bitSet.nextSetBit(i + 1);
+				return bak;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return i != -1;
+			}
+		};
+	}
+
+	@Override
+	public void forEachInt(IIntConsumer consumer) {
+		for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1))
+			consumer.accept(i);
+	}
+
+	@Override
+	public int[] toIntArray() {
+		int[] r = new int[bitSet.cardinality()];
+		int k = 0;
+		for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1))
+			r[k++] = i;
+		return r;
+	}
+
 	@Override
 	public int size() {
 		return bitSet.cardinality();
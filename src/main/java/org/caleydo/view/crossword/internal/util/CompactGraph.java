@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.util;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * a minimal undirected pseudo graph, where vertices and edges know their index, such that membership tests, removals
+ * and the iteration of incident edges don't need any hashing or per edge container objects.
+ *
+ * vertices keep their insertion order, edges don't
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class CompactGraph<V extends CompactGraph.AVertex<E>, E extends CompactGraph.AEdge<V>> {
+	private final List<V> vertices = new ArrayList<>();
+	private final List<E> edges = new ArrayList<>();
+
+	private final Set<V> vertexSet = new AbstractSet<V>() {
+		@Override
+		public Iterator<V> iterator() {
+			return Collections.unmodifiableList(vertices).iterator();
+		}
+
+		@Override
+		public int size() {
+			return vertices.size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof AVertex<?> && containsVertex((AVertex<?>) o);
+		}
+	};
+
+	private final Set<E> edgeSet = new AbstractSet<E>() {
+		@Override
+		public Iterator<E> iterator() {
+			return Collections.unmodifiableList(edges).iterator();
+		}
+
+		@Override
+		public int size() {
+			return edges.size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof AEdge<?> && containsEdge((AEdge<?>) o);
+		}
+	};
+
+	/**
+	 * @return a read only view of the vertices
+	 */
+	public Set<V> vertexSet() {
+		return vertexSet;
+	}
+
+	/**
+	 * @return a read only view of the edges
+	 */
+	public Set<E> edgeSet() {
+		return edgeSet;
+	}
+
+	public boolean containsVertex(AVertex<?> vertex) {
+		int i = vertex.index;
+		return i >= 0 && i < vertices.size() && vertices.get(i) == vertex;
+	}
+
+	public boolean containsEdge(AEdge<?> edge) {
+		int i = edge.index;
+		return i >= 0 && i < edges.size() && edges.get(i) == edge;
+	}
+
+	/**
+	 * @return whether the vertex was added
+	 */
+	public boolean addVertex(V vertex) {
+		if (containsVertex(vertex))
+			return false;
+		Preconditions.checkArgument(vertex.index < 0, "vertex is part of another graph");
+		vertex.index = vertices.size();
+		vertices.add(vertex);
+		return true;
+	}
+
+	/**
+	 * removes the given vertex including all its incident edges
+	 *
+	 * @return whether the vertex was part of this graph
+	 */
+	public boolean removeVertex(V vertex) {
+		if (!containsVertex(vertex))
+			return false;
+		while (!vertex.edges.isEmpty())
+			removeEdge(vertex.edges.get(vertex.edges.size() - 1));
+		final int i = vertex.index;
+		vertices.remove(i);
+		for (int j = i; j < vertices.size(); ++j)
+			vertices.get(j).index = j;
+		vertex.index = -1;
+		return true;
+	}
+
+	public void addEdge(V source, V target, E edge) {
+		Preconditions.checkArgument(containsVertex(source) && containsVertex(target), "unknown vertex");
+		Preconditions.checkArgument(edge.index < 0, "edge is already part of a graph");
+		edge.source = source;
+		edge.target = target;
+		edge.index = edges.size();
+		edges.add(edge);
+		edge.sourceSlot = source.edges.size();
+		source.edges.add(edge);
+		if (source != target) { // self loops are just listed once
+			edge.targetSlot = target.edges.size();
+			target.edges.add(edge);
+		}
+	}
+
+	/**
+	 * @return whether the edge was part of this graph
+	 */
+	public boolean removeEdge(E edge) {
+		if (!containsEdge(edge))
+			return false;
+		removeIncident(edge.source, edge.sourceSlot);
+		if (edge.source != edge.target)
+			removeIncident(edge.target, edge.targetSlot);
+		final int i = edge.index;
+		final E last = edges.remove(edges.size() - 1);
+		if (last != edge) {
+			edges.set(i, last);
+			last.index = i;
+		}
+		edge.index = -1;
+		return true;
+	}
+
+	private void removeIncident(V vertex, int slot) {
+		final List<E> l = vertex.edges;
+		final E last = l.remove(l.size() - 1);
+		if (slot == l.size())
+			return;
+		l.set(slot, last);
+		if (last.source == vertex)
+			last.sourceSlot = slot;
+		else
+			last.targetSlot = slot;
+	}
+
+	/**
+	 * @return a read only view of the incident edges of the given vertex
+	 */
+	public Set<E> edgesOf(final V vertex) {
+		return new AbstractSet<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				return Collections.unmodifiableList(vertex.edges).iterator();
+			}
+
+			@Override
+			public int size() {
+				return vertex.edges.size();
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				if (!(o instanceof AEdge<?>))
+					return false;
+				AEdge<?> e = (AEdge<?>) o;
+				return containsEdge(e) && (e.source == vertex || e.target == vertex);
+			}
+		};
+	}
+
+	/**
+	 * base class of a vertex, which can be part of a single graph only
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public static abstract class AVertex<E> {
+		int index = -1;
+		final List<E> edges = new ArrayList<>(4);
+	}
+
+	/**
+	 * base class of an edge, which can be part of a single graph only
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public static abstract class AEdge<V> {
+		int index = -1;
+		V source;
+		V target;
+		/**
+		 * positions within the incident edge lists of the source and target vertex
+		 */
+		int sourceSlot;
+		int targetSlot;
+
+		public V getSource() {
+			return source;
+		}
+
+		public V getTarget() {
+			return target;
+		}
+	}
+}
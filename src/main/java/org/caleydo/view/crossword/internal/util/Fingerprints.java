@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.util;
+
+/**
+ * order independent 64 bit fingerprints of integer collections: the sum of a strong 64 bit mix of each value combined
+ * with the number of values
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class Fingerprints {
+	private Fingerprints() {
+
+	}
+
+	/**
+	 * 64 bit finalizer of a single value, such that the sum of them is a good fingerprint
+	 */
+	public static long mix(int value) {
+		long z = value * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @param sum
+	 *            the sum of the mixed values
+	 * @param size
+	 *            the number of values
+	 * @return the fingerprint
+	 */
+	public static long combine(long sum, int size) {
+		return sum * 31 + size;
+	}
+
+	/**
+	 * @return the order independent fingerprint of the given values
+	 */
+	public static long of(Iterable<Integer> values) {
+		long sum = 0;
+		int size = 0;
+		for (Integer v : values) {
+			sum += mix(v.intValue());
+			size++;
+		}
+		return combine(sum, size);
+	}
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.caleydo.core.data.perspective.variable.Perspective;
+import org.caleydo.core.data.virtualarray.VirtualArray;
+import org.caleydo.core.id.IDCategory;
+import org.caleydo.core.id.IDType;
+import org.caleydo.core.id.IIDTypeMapper;
+import org.caleydo.view.crossword.api.model.TypedSet;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * memoizes the conversion of the ids of a {@link Perspective} to a {@link TypedSet} of primary ids.
+ *
+ * entries are keyed by the identity of the perspective and the order independent fingerprint of its
+ * {@link VirtualArray}, such that reorderings and repeated updates with the same membership reuse the converted set.
+ * The number of entries is bounded, the least recently used ones are evicted first. Keys just weakly reference the
+ * perspective, such that removed perspectives and their data domains aren't kept alive till their eviction
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class IDConversionCache {
+	private static final int MAX_ENTRIES = 256;
+
+	/**
+	 * thread safe, such that conversions can run in the background
+	 */
+	private static final Cache<Key, TypedSet> cache = CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).build();
+
+	private IDConversionCache() {
+
+	}
+
+	/**
+	 * convert the ids in a perspective to a set using the best fitting representation, interned such that identical
+	 * sets of other elements are shared. The ids are stored as dense ordinals of the {@link IDDictionary} of their
+	 * category
+	 *
+	 * @param perspective
+	 * @param mapper
+	 *            the mapper to the primary id type
+	 * @return
+	 */
+	public static TypedSet convert(Perspective perspective, IIDTypeMapper<Integer, Integer> mapper) {
+		List<Integer> ids = perspective.getVirtualArray().getIDs();
+		return convert(perspective, ids, Fingerprints.of(ids), mapper);
+	}
+
+	/**
+	 * see {@link #convert(Perspective, IIDTypeMapper)}, can be called from any thread
+	 *
+	 * @param ids
+	 *            a snapshot of the ids of the perspective
+	 * @param fingerprint
+	 *            the already computed {@link Fingerprints#of(Iterable)} of the ids
+	 */
+	public static TypedSet convert(Perspective perspective, List<Integer> ids, long fingerprint,
+			IIDTypeMapper<Integer, Integer> mapper) {
+		return convert(perspective, ids, fingerprint, mapper, null);
+	}
+
+	/**
+	 * see {@link #convert(Perspective, List, long, IIDTypeMapper)}
+	 *
+	 * @param parent
+	 *            the ids of the perspective the given one was derived from, e.g. by splitting, or <code>null</code>.
+	 *            If the ids are a subset of them, they may be stored as a view of them
+	 */
+	public static TypedSet convert(Perspective perspective, List<Integer> ids, long fingerprint,
+			IIDTypeMapper<Integer, Integer> mapper, TypedSet parent) {
+		final Key key = new Key(perspective, mapper.getTarget(), fingerprint, parent);
+		TypedSet r = cache.getIfPresent(key);
+		if (r == null) {
+			r = convertImpl(ids, mapper, parent);
+			cache.put(key, r);
+		}
+		return r;
+	}
+
+	private static TypedSet convertImpl(List<Integer> ids, IIDTypeMapper<Integer, Integer> mapper, TypedSet parent) {
+		Set<Integer> primary = mapper.apply(ids);
+		final IDType target = mapper.getTarget();
+		IDDictionary dictionary = IDDictionary.get(target.getIDCategory());
+		final int[] ordinals = dictionary.encode(primary);
+		if (parent != null && parent.getDictionary() == dictionary && target.equals(parent.getIdType()))
+			return parent.createSubset(ordinals).intern();
+		return new TypedSet(SetRepresentations.create(ordinals), target, dictionary).intern();
+	}
+
+	/**
+	 * @param mapper
+	 * @return an empty set of the target of the given mapper, e.g. as placeholder until the real one is converted
+	 */
+	public static TypedSet empty(IIDTypeMapper<Integer, Integer> mapper) {
+		final IDType target = mapper.getTarget();
+		return new TypedSet(SortedIntSet.EMPTY, target, IDDictionary.get(target.getIDCategory())).intern();
+	}
+
+	/**
+	 * drops all entries
+	 */
+	public static void clear() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * drops all entries converting to the given category, e.g. as its {@link IDDictionary} was released
+	 */
+	static void invalidate(IDCategory category) {
+		for (Iterator<Key> it = cache.asMap().keySet().iterator(); it.hasNext();)
+			if (category.equals(it.next().target.getIDCategory()))
+				it.remove();
+	}
+
+	/**
+	 * the parent is part of the key, as the result may be a view of it
+	 */
+	private static final class Key {
+		private final Reference<Perspective> perspective;
+		private final IDType target;
+		private final long fingerprint;
+		private final Reference<TypedSet> parent;
+		private final int hash;
+
+		public Key(Perspective perspective, IDType target, long fingerprint, TypedSet parent) {
+			this.perspective = new WeakReference<>(perspective);
+			this.target = target;
+			this.fingerprint = fingerprint;
+			this.parent = parent == null ? null : new WeakReference<>(parent);
+			int h = System.identityHashCode(perspective) * 31 + target.hashCode();
+			h = h * 31 + (int) (fingerprint ^ (fingerprint >>> 32));
+			this.hash = h * 31 + System.identityHashCode(parent);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			if (hash != other.hash || fingerprint != other.fingerprint || !target.equals(other.target))
+				return false;
+			Perspective p = perspective.get();
+			if (p == null || p != other.perspective.get()) // collected ones never match again
+				return false;
+			if (parent == null || other.parent == null)
+				return parent == other.parent;
+			TypedSet s = parent.get();
+			return s != null && s == other.parent.get();
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.caleydo.core.id.IDCategory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * a dictionary mapping the sparse primary ids of an {@link IDCategory} to dense ordinals 0..n-1, such that the
+ * bitmaps of the id sets are proportional to the number of ids seen and not to the largest id value.
+ *
+ * ordinals are assigned in ascending id order per encoded batch and never change, i.e. the dictionary just grows.
+ * Lookups are lock free on a snapshot of the hash table, just appending new ordinals is synchronized. A dictionary is
+ * kept as long as a view references its category, see {@link #acquire(IDCategory)}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class IDDictionary {
+	private static final Map<IDCategory, IDDictionary> dictionaries = new ConcurrentHashMap<>();
+
+	private static final int FREE = -1;
+
+	/**
+	 * ordinal to id
+	 */
+	private volatile int[] ids = new int[16];
+	private volatile int size = 0;
+
+	/**
+	 * id to ordinal, replaced by a grown copy whenever new ordinals are appended
+	 */
+	private volatile Table table = new Table(32);
+
+	/**
+	 * number of {@link #acquire(IDCategory)} calls without matching {@link #release(IDCategory)}, guarded by
+	 * {@link #dictionaries}
+	 */
+	private int references = 0;
+
+	private IDDictionary() {
+
+	}
+
+	/**
+	 * @param category
+	 * @return the shared dictionary of the given category
+	 */
+	public static IDDictionary get(IDCategory category) {
+		IDDictionary d = dictionaries.get(category);
+		if (d != null)
+			return d;
+		synchronized (dictionaries) {
+			d = dictionaries.get(category);
+			if (d == null) {
+				d = new IDDictionary();
+				dictionaries.put(category, d);
+			}
+			return d;
+		}
+	}
+
+	/**
+	 * marks the dictionary of the given category as used, e.g. by an element of a view
+	 *
+	 * @param category
+	 * @return the shared dictionary of the given category
+	 */
+	public static IDDictionary acquire(IDCategory category) {
+		synchronized (dictionaries) {
+			IDDictionary d = get(category);
+			d.references++;
+			return d;
+		}
+	}
+
+	/**
+	 * counterpart of {@link #acquire(IDCategory)}, the dictionary and the conversions using it will be dropped if no
+	 * one uses the category anymore
+	 *
+	 * @param category
+	 */
+	public static void release(IDCategory category) {
+		synchronized (dictionaries) {
+			IDDictionary d = dictionaries.get(category);
+			if (d == null || --d.references > 0)
+				return;
+			dictionaries.remove(category);
+		}
+		IDConversionCache.invalidate(category);
+	}
+
+	private static int[] newTable(int capacity) {
+		int[] r = new int[capacity];
+		Arrays.fill(r, FREE);
+		return r;
+	}
+
+	private static int hash(int id) {
+		int h = id * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return the number of known ids
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param ordinal
+	 * @return the id of the given ordinal
+	 */
+	public int toId(int ordinal) {
+		return ids[ordinal];
+	}
+
+	/**
+	 * @param id
+	 * @return the ordinal of the given id or -1 if the id is not part of this dictionary
+	 */
+	public int toOrdinal(int id) {
+		if (id < 0)
+			return -1;
+		return table.get(id);
+	}
+
+	/**
+	 * encodes the given ids, assigning new ordinals to unknown ones
+	 *
+	 * @param ids
+	 *            the ids to encode
+	 * @return the ascending sorted ordinals of the given ids without duplicates
+	 */
+	public synchronized int[] encode(Collection<Integer> ids) {
+		int[] r = new int[ids.size()];
+		int i = 0;
+		for (Integer id : ids)
+			r[i++] = id.intValue();
+		Arrays.sort(r); // new ordinals in ascending id order to preserve clusters
+		int k = 0;
+		for (i = 0; i < r.length; ++i)
+			if (i == 0 || r[i] != r[k - 1])
+				r[k++] = r[i];
+		Preconditions.checkArgument(k == 0 || r[0] >= 0, "negative id: %s", k == 0 ? 0 : r[0]);
+
+		Table t = table;
+		int[] ordinals = new int[k];
+		int missing = 0;
+		for (i = 0; i < k; ++i)
+			if ((ordinals[i] = t.get(r[i])) < 0)
+				missing++;
+		if (missing > 0) {
+			// append to a private copy, which is published afterwards
+			t = t.copy(size + missing);
+			for (i = 0; i < k; ++i)
+				if (ordinals[i] < 0)
+					t.put(r[i], ordinals[i] = append(r[i]));
+			table = t;
+		}
+		Arrays.sort(ordinals);
+		return ordinals;
+	}
+
+	private int append(int id) {
+		final int ordinal = size;
+		int[] l = this.ids;
+		if (ordinal >= l.length) {
+			l = Arrays.copyOf(l, l.length * 2);
+			this.ids = l;
+		}
+		l[ordinal] = id;
+		size = ordinal + 1;
+		return ordinal;
+	}
+
+	/**
+	 * open addressing hash table id to ordinal, with linear probing. Published instances aren't modified anymore
+	 */
+	private static final class Table {
+		private final int[] keys;
+		private final int[] values;
+
+		Table(int capacity) {
+			this.keys = newTable(capacity);
+			this.values = new int[capacity];
+		}
+
+		int get(int id) {
+			final int mask = keys.length - 1;
+			for (int i = hash(id) & mask;; i = (i + 1) & mask) {
+				int k = keys[i];
+				if (k == id)
+					return values[i];
+				if (k == FREE)
+					return -1;
+			}
+		}
+
+		void put(int id, int ordinal) {
+			final int mask = keys.length - 1;
+			int i = hash(id) & mask;
+			while (keys[i] != FREE)
+				i = (i + 1) & mask;
+			keys[i] = id;
+			values[i] = ordinal;
+		}
+
+		/**
+		 * @return a copy with enough capacity for the given number of entries
+		 */
+		Table copy(int entries) {
+			int capacity = keys.length;
+			while (entries * 2 > capacity)
+				capacity *= 2;
+			Table t = new Table(capacity);
+			for (int j = 0; j < keys.length; ++j)
+				if (keys[j] != FREE)
+					t.put(keys[j], values[j]);
+			return t;
+		}
+	}
+}
@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.util;
+
+import java.util.Set;
+
+import org.caleydo.view.crossword.api.model.IIntConsumer;
+import org.caleydo.view.crossword.api.model.IIntIterator;
+
+/**
+ * a {@link Set} of integers, which can be accessed and iterated without boxing. The values are iterated in ascending
+ * order
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public interface IIntSet extends Set<Integer> {
+	boolean contains(int v);
+
+	IIntIterator intIterator();
+
+	void forEachInt(IIntConsumer consumer);
+
+	int[] toIntArray();
+}
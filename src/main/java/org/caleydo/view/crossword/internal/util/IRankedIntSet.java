@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.util;
+
+/**
+ * a {@link IIntSet}, which can map its values to their position in ascending order and back, such that subsets can be
+ * stored as selections of positions, see {@link SubsetIntSet}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public interface IRankedIntSet extends IIntSet {
+	/**
+	 * @param v
+	 * @return the number of smaller values if the value is part of this set, else -1
+	 */
+	int rank(int v);
+
+	/**
+	 * @param rank
+	 *            0 &lt;= rank &lt; size()
+	 * @return the value with the given rank
+	 */
+	int select(int rank);
+}
@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.caleydo.view.crossword.api.model.IIntConsumer;
+import org.caleydo.view.crossword.api.model.IIntIterator;
+
+/**
+ * frozen, immutable variant of a {@link BitSetSet}, with precomputed cardinality, bounds and hash code. As it can't be
+ * modified, instances can be shared freely between elements, edges and threads
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class ImmutableBitSetSet extends AbstractSet<Integer> implements IRankedIntSet {
+	public static final ImmutableBitSetSet EMPTY = new ImmutableBitSetSet(new long[0]);
+
+	private final long[] words;
+	private final int cardinality;
+	/**
+	 * smallest and largest element or -1 if empty
+	 */
+	private final int min;
+	private final int max;
+	private final int hash;
+	/**
+	 * lazily computed number of set bits before each word, see {@link #rank(int)}
+	 */
+	private volatile int[] ranks;
+
+	private ImmutableBitSetSet(long[] words) {
+		this.words = words;
+		int c = 0;
+		int h = 0;
+		for (int i = 0; i < words.length; ++i) {
+			long w = words[i];
+			c += Long.bitCount(w);
+			while (w != 0) {
+				long t = w & -w;
+				h += i * 64 + Long.numberOfTrailingZeros(t);
+				w ^= t;
+			}
+		}
+		this.cardinality = c;
+		this.hash = h;
+		this.min = c == 0 ? -1 : nextSetBit(0);
+		this.max = c == 0 ? -1 : (words.length - 1) * 64 + 63 - Long.numberOfLeadingZeros(words[words.length - 1]);
+	}
+
+	public static ImmutableBitSetSet of(BitSet bitSet) {
+		return wrap(bitSet.toLongArray());
+	}
+
+	public static ImmutableBitSetSet of(Set<Integer> ids) {
+		if (ids instanceof ImmutableBitSetSet)
+			return (ImmutableBitSetSet) ids;
+		if (ids instanceof BitSetSet)
+			return wrap(((BitSetSet) ids).words().clone());
+		BitSet bitSet = new BitSet();
+		for (Integer id : ids)
+			bitSet.set(id.intValue());
+		return of(bitSet);
+	}
+
+	/**
+	 * @param sorted
+	 *            ascending sorted values without duplicates
+	 * @param size
+	 *            the number of valid values in the array
+	 */
+	static ImmutableBitSetSet of(int[] sorted, int size) {
+		if (size == 0)
+			return EMPTY;
+		long[] words = new long[(sorted[size - 1] >>> 6) + 1];
+		for (int i = 0; i < size; ++i)
+			words[sorted[i] >>> 6] |= 1L << sorted[i];
+		return wrap(words);
+	}
+
+	/**
+	 * @param words
+	 *            will be owned by the result and trimmed if needed
+	 */
+	private static ImmutableBitSetSet wrap(long[] words) {
+		int l = words.length;
+		while (l > 0 && words[l - 1] == 0)
+			l--;
+		if (l == 0)
+			return EMPTY;
+		return new ImmutableBitSetSet(l == words.length ? words : Arrays.copyOf(words, l));
+	}
+
+	/**
+	 * @return the words, not to be modified
+	 */
+	long[] words() {
+		return words;
+	}
+
+	/**
+	 * @return the smallest element or -1 if empty
+	 */
+	public int getMin() {
+		return min;
+	}
+
+	/**
+	 * @return the largest element or -1 if empty
+	 */
+	public int getMax() {
+		return max;
+	}
+
+	/**
+	 * @return a mutable copy as {@link BitSet}
+	 */
+	public BitSet toBitSet() {
+		return BitSet.valueOf(words);
+	}
+
+	@Override
+	public boolean contains(int v) {
+		if (cardinality == 0 || v < min || v > max)
+			return false;
+		return (words[v >>> 6] & (1L << v)) != 0;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Integer))
+			return false;
+		return contains(((Integer) o).intValue());
+	}
+
+	private int[] ranks() {
+		int[] r = ranks;
+		if (r == null) { // benign race, the result is always the same
+			r = new int[words.length];
+			int acc = 0;
+			for (int i = 0; i < words.length; ++i) {
+				r[i] = acc;
+				acc += Long.bitCount(words[i]);
+			}
+			ranks = r;
+		}
+		return r;
+	}
+
+	@Override
+	public int rank(int v) {
+		if (!contains(v))
+			return -1;
+		final int u = v >>> 6;
+		return ranks()[u] + Long.bitCount(words[u] & ((1L << v) - 1));
+	}
+
+	@Override
+	public int select(int rank) {
+		final int[] r = ranks();
+		// last word starting at or before the rank, which is the non empty one containing it
+		int lo = 0, hi = r.length - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (r[mid] <= rank)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		long w = words[lo];
+		for (int k = rank - r[lo]; k > 0; --k)
+			w &= w - 1; // drop the lowest bit
+		return lo * 64 + Long.numberOfTrailingZeros(w);
+	}
+
+	@Override
+	public int size() {
+		return cardinality;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return cardinality == 0;
+	}
+
+	private int nextSetBit(int from) {
+		int u = from >>> 6;
+		if (u >= words.length)
+			return -1;
+		long w = words[u] & (-1L << from);
+		while (true) {
+			if (w != 0)
+				return u * 64 + Long.numberOfTrailingZeros(w);
+			if (++u == words.length)
+				return -1;
+			w = words[u];
+		}
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			private int i = min;
+
+			@Override
+			public boolean hasNext() {
+				return i >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				if (i < 0)
+					throw new NoSuchElementException();
+				int r = i;
+				i = r == max ? -1 : nextSetBit(r + 1);
+				return r;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public IIntIterator intIterator() {
+		return new IIntIterator() {
+			private int i = min;
+
+			@Override
+			public boolean hasNext() {
+				return i >= 0;
+			}
+
+			@Override
+			public int nextInt() {
+				if (i < 0)
+					throw new NoSuchElementException();
+				int r = i;
+				i = r == max ? -1 : nextSetBit(r + 1);
+				return r;
+			}
+		};
+	}
+
+	@Override
+	public void forEachInt(IIntConsumer consumer) {
+		for (int i = 0; i < words.length; ++i) {
+			long w = words[i];
+			while (w != 0) {
+				long t = w & -w;
+				consumer.accept(i * 64 + Long.numberOfTrailingZeros(t));
+				w ^= t;
+			}
+		}
+	}
+
+	@Override
+	public int[] toIntArray() {
+		int[] r = new int[cardinality];
+		int k = 0;
+		for (int i = 0; i < words.length; ++i) {
+			long w = words[i];
+			while (w != 0) {
+				long t = w & -w;
+				r[k++] = i * 64 + Long.numberOfTrailingZeros(t);
+				w ^= t;
+			}
+		}
+		return r;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (o instanceof ImmutableBitSetSet) {
+			ImmutableBitSetSet other = (ImmutableBitSetSet) o;
+			return cardinality == other.cardinality && hash == other.hash && min == other.min && max == other.max
+					&& Arrays.equals(words, other.words);
+		}
+		return super.equals(o);
+	}
+
+	public static ImmutableBitSetSet and(long[] a, long[] b) {
+		final int n = Math.min(a.length, b.length);
+		long[] r = new long[n];
+		for (int i = 0; i < n; ++i)
+			r[i] = a[i] & b[i];
+		return wrap(r);
+	}
+
+	public static ImmutableBitSetSet or(long[] a, long[] b) {
+		if (a.length < b.length) {
+			long[] t = a;
+			a = b;
+			b = t;
+		}
+		long[] r = a.clone();
+		for (int i = 0; i < b.length; ++i)
+			r[i] |= b[i];
+		return wrap(r);
+	}
+
+	public static ImmutableBitSetSet andNot(long[] a, long[] b) {
+		long[] r = a.clone();
+		final int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; ++i)
+			r[i] &= ~b[i];
+		return wrap(r);
+	}
+}
@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.util;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.caleydo.view.crossword.api.model.IIntIterator;
+
+/**
+ * count only kernels for the different set backends, which neither materialize the result nor box any value
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class IntSetKernels {
+	private IntSetKernels() {
+
+	}
+
+	/**
+	 * @return the number of elements shared by both sets
+	 */
+	public static int andCardinality(Set<Integer> a, Set<Integer> b) {
+		if (isSubsetView(a, b))
+			return a.size();
+		if (isSubsetView(b, a))
+			return b.size();
+		if (a instanceof SubsetIntSet && b instanceof SubsetIntSet
+				&& ((SubsetIntSet) a).getParent() == ((SubsetIntSet) b).getParent())
+			return SubsetIntSet.andCardinality((SubsetIntSet) a, (SubsetIntSet) b);
+		if (a instanceof ImmutableBitSetSet && b instanceof ImmutableBitSetSet)
+			return andCardinality((ImmutableBitSetSet) a, (ImmutableBitSetSet) b);
+		final long[] wa = words(a);
+		final long[] wb = words(b);
+		if (wa != null && wb != null)
+			return andCardinality(wa, wb, 0, Math.min(wa.length, wb.length));
+		if (a instanceof SortedIntSet && b instanceof SortedIntSet)
+			return SortedIntSet.andCardinality((SortedIntSet) a, (SortedIntSet) b);
+		if (a instanceof RoaringSet && b instanceof RoaringSet)
+			return RoaringSet.andCardinality((RoaringSet) a, (RoaringSet) b);
+
+		// mixed case: iterate the side that can be iterated without boxing and probe the other one
+		if (!isPrimitive(a))
+			return probe(a, b);
+		if (!isPrimitive(b))
+			return probe(b, a);
+		// different primitive backends: iterate the smaller one
+		return a.size() <= b.size() ? probePrimitive(a, b) : probePrimitive(b, a);
+	}
+
+	/**
+	 * @return the number of elements shared by all three sets
+	 */
+	public static int andCardinality(Set<Integer> a, Set<Integer> b, Set<Integer> c) {
+		// a shared or nested operand reduces to the pairwise case
+		if (a == b || isSubsetView(a, b) || isSubsetView(c, b))
+			return andCardinality(a, c);
+		if (a == c || b == c || isSubsetView(a, c) || isSubsetView(b, c))
+			return andCardinality(a, b);
+		if (isSubsetView(b, a) || isSubsetView(c, a))
+			return andCardinality(b, c);
+		final long[] wa = words(a);
+		final long[] wb = words(b);
+		final long[] wc = words(c);
+		if (wa != null && wb != null && wc != null) {
+			final int to = Math.min(wa.length, Math.min(wb.length, wc.length));
+			int r = 0;
+			for (int i = 0; i < to; ++i)
+				r += Long.bitCount(wa[i] & wb[i] & wc[i]);
+			return r;
+		}
+
+		// iterate the smallest one and probe the other two
+		if (b.size() < a.size()) {
+			Set<Integer> t = a;
+			a = b;
+			b = t;
+		}
+		if (c.size() < a.size()) {
+			Set<Integer> t = a;
+			a = c;
+			c = t;
+		}
+		int r = 0;
+		if (isPrimitive(a)) {
+			for (IIntIterator it = ((IIntSet) a).intIterator(); it.hasNext();) {
+				int v = it.nextInt();
+				if (isMember(b, v) && isMember(c, v))
+					r++;
+			}
+		} else {
+			for (Integer v : a)
+				if (isMember(b, v.intValue()) && isMember(c, v.intValue()))
+					r++;
+		}
+		return r;
+	}
+
+	private static int andCardinality(ImmutableBitSetSet a, ImmutableBitSetSet b) {
+		if (a.isEmpty() || b.isEmpty()) // no bounds
+			return 0;
+		final int min = Math.max(a.getMin(), b.getMin());
+		final int max = Math.min(a.getMax(), b.getMax());
+		if (min > max) // disjoint bounds
+			return 0;
+		return andCardinality(a.words(), b.words(), min >>> 6, (max >>> 6) + 1);
+	}
+
+	public static int orCardinality(Set<Integer> a, Set<Integer> b) {
+		return a.size() + b.size() - andCardinality(a, b);
+	}
+
+	public static int andNotCardinality(Set<Integer> a, Set<Integer> b) {
+		return a.size() - andCardinality(a, b);
+	}
+
+	/**
+	 * @return the number of bits set in both word arrays within the given word range
+	 */
+	private static int andCardinality(long[] a, long[] b, int from, int to) {
+		int r = 0;
+		for (int i = from; i < to; ++i)
+			r += Long.bitCount(a[i] & b[i]);
+		return r;
+	}
+
+	/**
+	 * @return the word representation of the given set if it is bitset based or <code>null</code>
+	 */
+	public static long[] words(Set<Integer> s) {
+		if (s instanceof ImmutableBitSetSet)
+			return ((ImmutableBitSetSet) s).words();
+		if (s instanceof BitSetSet)
+			return ((BitSetSet) s).words();
+		return null;
+	}
+
+	/**
+	 * @return the word representation of the given set, either the shared one for bitset based sets or a newly
+	 *         created one, not to be modified
+	 */
+	public static long[] toWords(Set<Integer> s) {
+		long[] w = words(s);
+		if (w != null)
+			return w;
+		w = new long[8];
+		int max = -1;
+		if (s instanceof IIntSet) {
+			for (IIntIterator it = ((IIntSet) s).intIterator(); it.hasNext();) {
+				int v = it.nextInt();
+				int u = v >>> 6;
+				if (u >= w.length)
+					w = Arrays.copyOf(w, Math.max(w.length * 2, u + 1));
+				w[u] |= 1L << v;
+				max = Math.max(max, u);
+			}
+		} else {
+			for (Integer id : s) {
+				int v = id.intValue();
+				int u = v >>> 6;
+				if (u >= w.length)
+					w = Arrays.copyOf(w, Math.max(w.length * 2, u + 1));
+				w[u] |= 1L << v;
+				max = Math.max(max, u);
+			}
+		}
+		return max + 1 == w.length ? w : Arrays.copyOf(w, max + 1);
+	}
+
+	/**
+	 * @return whether the given set is a {@link SubsetIntSet} view of the given parent
+	 */
+	private static boolean isSubsetView(Set<Integer> s, Set<Integer> parent) {
+		return s instanceof SubsetIntSet && ((SubsetIntSet) s).getParent() == parent;
+	}
+
+	private static boolean isPrimitive(Set<Integer> s) {
+		return s instanceof IIntSet;
+	}
+
+	private static boolean contains(Set<Integer> s, int v) {
+		return ((IIntSet) s).contains(v);
+	}
+
+	/**
+	 * @return whether the given set of any backend contains the value, boxing just for non primitive ones
+	 */
+	private static boolean isMember(Set<Integer> s, int v) {
+		return isPrimitive(s) ? contains(s, v) : s.contains(v);
+	}
+
+	/**
+	 * intersection of two sets of different backends, by iterating the smaller one and probing the other one
+	 *
+	 * @return the shared elements
+	 */
+	public static Set<Integer> and(IIntSet a, IIntSet b) {
+		if (isSubsetView(a, b))
+			return a;
+		if (isSubsetView(b, a))
+			return b;
+		if (a.size() > b.size()) {
+			IIntSet t = a;
+			a = b;
+			b = t;
+		}
+		int[] r = new int[a.size()];
+		int k = 0;
+		for (IIntIterator it = a.intIterator(); it.hasNext();) {
+			int v = it.nextInt();
+			if (b.contains(v))
+				r[k++] = v;
+		}
+		return SortedIntSet.of(r, k);
+	}
+
+	/**
+	 * union of two sets of different backends
+	 *
+	 * @return the elements of either set
+	 */
+	public static Set<Integer> or(IIntSet a, IIntSet b) {
+		return SortedIntSet.or(SortedIntSet.of(a.toIntArray(), a.size()), SortedIntSet.of(b.toIntArray(), b.size()));
+	}
+
+	/**
+	 * iterates over the boxed set and probes the other one
+	 */
+	private static int probe(Set<Integer> boxed, Set<Integer> other) {
+		if (!isPrimitive(other) && other.size() < boxed.size()) { // iterate the smaller one
+			Set<Integer> t = boxed;
+			boxed = other;
+			other = t;
+		}
+		final boolean primitive = isPrimitive(other);
+		int r = 0;
+		for (Integer v : boxed)
+			if (primitive ? contains(other, v.intValue()) : other.contains(v))
+				r++;
+		return r;
+	}
+
+	/**
+	 * iterates over a {@link IIntSet} and probes the other one
+	 */
+	private static int probePrimitive(Set<Integer> iterate, Set<Integer> other) {
+		int r = 0;
+		if (iterate instanceof SortedIntSet) {
+			for (int v : ((SortedIntSet) iterate).values())
+				if (contains(other, v))
+					r++;
+		} else if (words(iterate) != null) {
+			long[] words = words(iterate);
+			for (int i = 0; i < words.length; ++i) {
+				long w = words[i];
+				while (w != 0) {
+					long t = w & -w;
+					if (contains(other, i * 64 + Long.numberOfTrailingZeros(t)))
+						r++;
+					w ^= t;
+				}
+			}
+		} else {
+			for (IIntIterator it = ((IIntSet) iterate).intIterator(); it.hasNext();)
+				if (contains(other, it.nextInt()))
+					r++;
+		}
+		return r;
+	}
+}
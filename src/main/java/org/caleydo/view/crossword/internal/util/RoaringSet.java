@@ -0,0 +1,1042 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.caleydo.view.crossword.api.model.IIntConsumer;
+import org.caleydo.view.crossword.api.model.IIntIterator;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * a compressed bitmap set implementation in the style of roaring bitmaps.
+ *
+ * the integer space is partitioned into chunks of 2^16 values, identified by the upper 16 bits. Each non empty chunk
+ * is stored in the container fitting its density best: a sorted array for sparse chunks, a plain bitmap for dense
+ * chunks and a run length encoding for clustered chunks.
+ *
+ * instances are immutable after construction, such that they can be interned and shared between threads. Just non
+ * negative values are supported, as the chunks are ordered by their unsigned upper bits
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class RoaringSet extends AbstractSet<Integer> implements IIntSet {
+	/**
+	 * maximal cardinality of an {@link ArrayContainer} before it will be converted to a {@link BitmapContainer}
+	 */
+	private static final int ARRAY_MAX = 4096;
+	private static final int BITMAP_WORDS = (1 << 16) / 64;
+
+	private final char[] keys;
+	private final Container[] containers;
+	private final int n;
+	private final int cardinality;
+
+	private RoaringSet(char[] keys, Container[] containers, int n, int cardinality) {
+		this.keys = keys;
+		this.containers = containers;
+		this.n = n;
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * @param ids
+	 *            non negative values
+	 * @return a new set using the smallest container per chunk
+	 */
+	public static RoaringSet of(Collection<Integer> ids) {
+		if (ids instanceof RoaringSet)
+			return (RoaringSet) ids;
+		Builder b = new Builder(4);
+		for (Integer id : ids)
+			b.add(id.intValue());
+		return b.build(true);
+	}
+
+	/**
+	 * @param sorted
+	 *            ascending sorted non negative values without duplicates
+	 * @param size
+	 *            the number of valid values in the array
+	 * @return a new set using the smallest container per chunk
+	 */
+	static RoaringSet of(int[] sorted, int size) {
+		Builder b = new Builder(4);
+		for (int i = 0; i < size; ++i)
+			b.add(sorted[i]);
+		return b.build(true);
+	}
+
+	private static char high(int x) {
+		return (char) (x >>> 16);
+	}
+
+	private static char low(int x) {
+		return (char) x;
+	}
+
+	private int indexOf(char key) {
+		// common case: accessing the last container
+		if (n > 0 && keys[n - 1] == key)
+			return n - 1;
+		return Arrays.binarySearch(keys, 0, n, key);
+	}
+
+	@Override
+	public boolean contains(int x) {
+		if (x < 0)
+			return false;
+		int i = indexOf(high(x));
+		return i >= 0 && containers[i].contains(low(x));
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Integer))
+			return false;
+		return contains(((Integer) o).intValue());
+	}
+
+	@Override
+	public int size() {
+		return cardinality;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return cardinality == 0;
+	}
+
+	/**
+	 * @return the estimated number of bytes used by this set
+	 */
+	public long getSizeInBytes() {
+		long r = 16 + n * (2 + 4);
+		for (int i = 0; i < n; ++i)
+			r += containers[i].sizeInBytes();
+		return r;
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		final IIntIterator it = intIterator();
+		return new Iterator<Integer>() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public Integer next() {
+				return it.nextInt();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public IIntIterator intIterator() {
+		return new IIntIterator() {
+			private int i = 0;
+			private CharIterator it = n > 0 ? containers[0].iterator() : null;
+
+			@Override
+			public boolean hasNext() {
+				while (it != null && !it.hasNext()) {
+					it = (++i < n) ? containers[i].iterator() : null;
+				}
+				return it != null;
+			}
+
+			@Override
+			public int nextInt() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return (keys[i] << 16) | it.next();
+			}
+		};
+	}
+
+	@Override
+	public void forEachInt(IIntConsumer consumer) {
+		for (int i = 0; i < n; ++i) {
+			final int high = keys[i] << 16;
+			for (CharIterator it = containers[i].iterator(); it.hasNext();)
+				consumer.accept(high | it.next());
+		}
+	}
+
+	@Override
+	public int[] toIntArray() {
+		int[] r = new int[cardinality];
+		int k = 0;
+		for (int i = 0; i < n; ++i) {
+			final int high = keys[i] << 16;
+			for (CharIterator it = containers[i].iterator(); it.hasNext();)
+				r[k++] = high | it.next();
+		}
+		return r;
+	}
+
+	/**
+	 * @return a new set containing the elements shared by both sets
+	 */
+	public static RoaringSet and(RoaringSet a, RoaringSet b) {
+		Builder r = new Builder(Math.min(a.n, b.n));
+		int i = 0, j = 0;
+		while (i < a.n && j < b.n) {
+			char ka = a.keys[i];
+			char kb = b.keys[j];
+			if (ka < kb)
+				i++;
+			else if (ka > kb)
+				j++;
+			else {
+				r.append(ka, a.containers[i].and(b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return r.build(false);
+	}
+
+	/**
+	 * @return a new set containing the elements of either set
+	 */
+	public static RoaringSet or(RoaringSet a, RoaringSet b) {
+		Builder r = new Builder(a.n + b.n);
+		int i = 0, j = 0;
+		while (i < a.n && j < b.n) {
+			char ka = a.keys[i];
+			char kb = b.keys[j];
+			if (ka < kb)
+				r.append(ka, a.containers[i++]);
+			else if (ka > kb)
+				r.append(kb, b.containers[j++]);
+			else {
+				r.append(ka, a.containers[i++].or(b.containers[j++]));
+			}
+		}
+		for (; i < a.n; ++i)
+			r.append(a.keys[i], a.containers[i]);
+		for (; j < b.n; ++j)
+			r.append(b.keys[j], b.containers[j]);
+		return r.build(false);
+	}
+
+	/**
+	 * @return a new set containing the elements of a without the ones of b
+	 */
+	public static RoaringSet andNot(RoaringSet a, RoaringSet b) {
+		Builder r = new Builder(a.n);
+		int i = 0, j = 0;
+		while (i < a.n) {
+			char ka = a.keys[i];
+			while (j < b.n && b.keys[j] < ka)
+				j++;
+			if (j < b.n && b.keys[j] == ka)
+				r.append(ka, a.containers[i].andNot(b.containers[j]));
+			else
+				r.append(ka, a.containers[i]);
+			i++;
+		}
+		return r.build(false);
+	}
+
+	/**
+	 * @return the number of shared elements without materializing them
+	 */
+	public static int andCardinality(RoaringSet a, RoaringSet b) {
+		int r = 0;
+		int i = 0, j = 0;
+		while (i < a.n && j < b.n) {
+			char ka = a.keys[i];
+			char kb = b.keys[j];
+			if (ka < kb)
+				i++;
+			else if (ka > kb)
+				j++;
+			else
+				r += a.containers[i++].andCardinality(b.containers[j++]);
+		}
+		return r;
+	}
+
+	public static int orCardinality(RoaringSet a, RoaringSet b) {
+		return a.size() + b.size() - andCardinality(a, b);
+	}
+
+	public static int andNotCardinality(RoaringSet a, RoaringSet b) {
+		return a.size() - andCardinality(a, b);
+	}
+
+	/**
+	 * mutable state during the construction of a set, the containers are owned by the resulting set afterwards
+	 */
+	private static final class Builder {
+		private char[] keys;
+		private Container[] containers;
+		private int n;
+		private int cardinality;
+
+		Builder(int capacity) {
+			this.keys = new char[Math.max(capacity, 1)];
+			this.containers = new Container[keys.length];
+		}
+
+		void add(int x) {
+			Preconditions.checkArgument(x >= 0, "negative value: %s", x);
+			final char key = high(x);
+			// common case: sorted insertion
+			int i = (n > 0 && keys[n - 1] == key) ? n - 1 : Arrays.binarySearch(keys, 0, n, key);
+			if (i >= 0) {
+				Container c = containers[i];
+				int before = c.cardinality();
+				c = c.add(low(x));
+				containers[i] = c;
+				cardinality += c.cardinality() - before;
+			} else {
+				i = -i - 1;
+				ensureCapacity(n + 1);
+				System.arraycopy(keys, i, keys, i + 1, n - i);
+				System.arraycopy(containers, i, containers, i + 1, n - i);
+				keys[i] = key;
+				containers[i] = new ArrayContainer().add(low(x));
+				n++;
+				cardinality++;
+			}
+		}
+
+		/**
+		 * appends the container of a key larger than all existing ones
+		 */
+		void append(char key, Container c) {
+			if (c.cardinality() == 0)
+				return;
+			ensureCapacity(n + 1);
+			keys[n] = key;
+			containers[n] = c;
+			n++;
+			cardinality += c.cardinality();
+		}
+
+		private void ensureCapacity(int size) {
+			if (size <= keys.length)
+				return;
+			int l = Math.max(size, keys.length * 2);
+			keys = Arrays.copyOf(keys, l);
+			containers = Arrays.copyOf(containers, l);
+		}
+
+		/**
+		 * @param optimize
+		 *            whether every container should be converted to the representation with the smallest memory
+		 *            footprint, including the run length encoding
+		 */
+		RoaringSet build(boolean optimize) {
+			if (optimize)
+				for (int i = 0; i < n; ++i)
+					containers[i] = containers[i].optimize();
+			RoaringSet r = new RoaringSet(Arrays.copyOf(keys, n), Arrays.copyOf(containers, n), n, cardinality);
+			keys = null; // the containers are owned by the result
+			containers = null;
+			return r;
+		}
+	}
+
+	private interface CharIterator {
+		boolean hasNext();
+
+		char next();
+	}
+
+	/**
+	 * a container storing the lower 16 bits of the values of a chunk
+	 */
+	private static abstract class Container {
+		abstract int cardinality();
+
+		abstract boolean contains(char x);
+
+		abstract Container add(char x);
+
+		abstract Container copy();
+
+		abstract BitmapContainer toBitmap();
+
+		abstract CharIterator iterator();
+
+		abstract int sizeInBytes();
+
+		abstract int numberOfRuns();
+
+		/**
+		 * run containers are united and subtracted in their array or bitmap form
+		 */
+		Container expandRuns() {
+			return this;
+		}
+
+		/**
+		 * @return the smallest representation of this container
+		 */
+		Container optimize() {
+			final int card = cardinality();
+			final int runs = numberOfRuns();
+			final int asRuns = 2 + 4 * runs;
+			final int asArray = 2 * card;
+			final int asBitmap = BITMAP_WORDS * 8;
+			if (asRuns < Math.min(asArray, asBitmap))
+				return this instanceof RunContainer ? this : RunContainer.of(this, runs);
+			Container c = expandRuns();
+			if (card <= ARRAY_MAX)
+				return c instanceof ArrayContainer ? c : toArray(c);
+			return c instanceof BitmapContainer ? c : c.toBitmap();
+		}
+
+		final Container and(Container o) {
+			if (this instanceof RunContainer)
+				return ((RunContainer) this).andRuns(o);
+			if (o instanceof RunContainer)
+				return ((RunContainer) o).andRuns(this);
+			Container a = this;
+			Container b = o;
+			if (a instanceof ArrayContainer) {
+				if (b instanceof ArrayContainer)
+					return ((ArrayContainer) a).and((ArrayContainer) b);
+				return ((ArrayContainer) a).and((BitmapContainer) b);
+			}
+			if (b instanceof ArrayContainer)
+				return ((ArrayContainer) b).and((BitmapContainer) a);
+			return ((BitmapContainer) a).and((BitmapContainer) b);
+		}
+
+		final int andCardinality(Container o) {
+			if (this instanceof RunContainer)
+				return ((RunContainer) this).andRunsCardinality(o);
+			if (o instanceof RunContainer)
+				return ((RunContainer) o).andRunsCardinality(this);
+			Container a = this;
+			Container b = o;
+			if (a instanceof ArrayContainer) {
+				if (b instanceof ArrayContainer)
+					return ((ArrayContainer) a).andCardinality((ArrayContainer) b);
+				return ((ArrayContainer) a).andCardinality((BitmapContainer) b);
+			}
+			if (b instanceof ArrayContainer)
+				return ((ArrayContainer) b).andCardinality((BitmapContainer) a);
+			return ((BitmapContainer) a).andCardinality((BitmapContainer) b);
+		}
+
+		final Container or(Container o) {
+			Container a = expandRuns();
+			Container b = o.expandRuns();
+			if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+				return ((ArrayContainer) a).or((ArrayContainer) b);
+			BitmapContainer r = a.toBitmap();
+			if (r == a)
+				r = (BitmapContainer) r.copy();
+			r.orInPlace(b);
+			return r;
+		}
+
+		final Container andNot(Container o) {
+			Container a = expandRuns();
+			Container b = o.expandRuns();
+			if (a instanceof ArrayContainer)
+				return ((ArrayContainer) a).filterNot(b);
+			BitmapContainer r = (BitmapContainer) a.copy();
+			r.andNotInPlace(b);
+			return r.shrink();
+		}
+	}
+
+	private static ArrayContainer toArray(Container c) {
+		char[] content = new char[c.cardinality()];
+		int k = 0;
+		for (CharIterator it = c.iterator(); it.hasNext();)
+			content[k++] = it.next();
+		return new ArrayContainer(content, k);
+	}
+
+	private static final class ArrayContainer extends Container {
+		private char[] content;
+		private int card;
+
+		ArrayContainer() {
+			this(new char[4], 0);
+		}
+
+		ArrayContainer(char[] content, int card) {
+			this.content = content;
+			this.card = card;
+		}
+
+		@Override
+		int cardinality() {
+			return card;
+		}
+
+		@Override
+		boolean contains(char x) {
+			return Arrays.binarySearch(content, 0, card, x) >= 0;
+		}
+
+		@Override
+		Container add(char x) {
+			// common case: sorted insertion
+			int i = (card == 0 || content[card - 1] < x) ? -card - 1 : Arrays.binarySearch(content, 0, card, x);
+			if (i >= 0)
+				return this;
+			if (card >= ARRAY_MAX)
+				return toBitmap().add(x);
+			i = -i - 1;
+			if (card == content.length)
+				content = Arrays.copyOf(content, Math.max(4, Math.min(ARRAY_MAX, content.length * 2)));
+			System.arraycopy(content, i, content, i + 1, card - i);
+			content[i] = x;
+			card++;
+			return this;
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(content, card), card);
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			BitmapContainer r = new BitmapContainer();
+			for (int i = 0; i < card; ++i)
+				r.words[content[i] >>> 6] |= 1L << content[i];
+			r.card = card;
+			return r;
+		}
+
+		@Override
+		CharIterator iterator() {
+			return new CharIterator() {
+				private int i = 0;
+
+				@Override
+				public boolean hasNext() {
+					return i < card;
+				}
+
+				@Override
+				public char next() {
+					return content[i++];
+				}
+			};
+		}
+
+		@Override
+		int sizeInBytes() {
+			return 16 + content.length * 2;
+		}
+
+		@Override
+		int numberOfRuns() {
+			if (card == 0)
+				return 0;
+			int runs = 1;
+			for (int i = 1; i < card; ++i)
+				if (content[i] != content[i - 1] + 1)
+					runs++;
+			return runs;
+		}
+
+		ArrayContainer and(ArrayContainer o) {
+			char[] r = new char[Math.min(card, o.card)];
+			int k = 0;
+			int i = 0, j = 0;
+			while (i < card && j < o.card) {
+				char a = content[i];
+				char b = o.content[j];
+				if (a < b)
+					i++;
+				else if (a > b)
+					j++;
+				else {
+					r[k++] = a;
+					i++;
+					j++;
+				}
+			}
+			return new ArrayContainer(r, k);
+		}
+
+		ArrayContainer and(BitmapContainer o) {
+			char[] r = new char[card];
+			int k = 0;
+			for (int i = 0; i < card; ++i)
+				if (o.contains(content[i]))
+					r[k++] = content[i];
+			return new ArrayContainer(r, k);
+		}
+
+		int andCardinality(ArrayContainer o) {
+			int k = 0;
+			int i = 0, j = 0;
+			while (i < card && j < o.card) {
+				char a = content[i];
+				char b = o.content[j];
+				if (a < b)
+					i++;
+				else if (a > b)
+					j++;
+				else {
+					k++;
+					i++;
+					j++;
+				}
+			}
+			return k;
+		}
+
+		int andCardinality(BitmapContainer o) {
+			int k = 0;
+			for (int i = 0; i < card; ++i)
+				if (o.contains(content[i]))
+					k++;
+			return k;
+		}
+
+		Container or(ArrayContainer o) {
+			if (card + o.card > ARRAY_MAX) {
+				BitmapContainer r = toBitmap();
+				r.orInPlace(o);
+				return r.shrink(); // the overlap might keep it small
+			}
+			char[] r = new char[card + o.card];
+			int k = 0;
+			int i = 0, j = 0;
+			while (i < card && j < o.card) {
+				char a = content[i];
+				char b = o.content[j];
+				if (a < b)
+					r[k++] = content[i++];
+				else if (a > b)
+					r[k++] = o.content[j++];
+				else {
+					r[k++] = a;
+					i++;
+					j++;
+				}
+			}
+			while (i < card)
+				r[k++] = content[i++];
+			while (j < o.card)
+				r[k++] = o.content[j++];
+			return new ArrayContainer(r, k);
+		}
+
+		ArrayContainer filterNot(Container o) {
+			char[] r = new char[card];
+			int k = 0;
+			for (int i = 0; i < card; ++i)
+				if (!o.contains(content[i]))
+					r[k++] = content[i];
+			return new ArrayContainer(r, k);
+		}
+	}
+
+	private static final class BitmapContainer extends Container {
+		private final long[] words;
+		private int card;
+
+		BitmapContainer() {
+			this(new long[BITMAP_WORDS], 0);
+		}
+
+		BitmapContainer(long[] words, int card) {
+			this.words = words;
+			this.card = card;
+		}
+
+		@Override
+		int cardinality() {
+			return card;
+		}
+
+		@Override
+		boolean contains(char x) {
+			return (words[x >>> 6] & (1L << x)) != 0;
+		}
+
+		@Override
+		Container add(char x) {
+			long before = words[x >>> 6];
+			long after = before | (1L << x);
+			if (before != after) {
+				words[x >>> 6] = after;
+				card++;
+			}
+			return this;
+		}
+
+		Container shrink() {
+			return card <= ARRAY_MAX ? toArray(this) : this;
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(words.clone(), card);
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			return this;
+		}
+
+		@Override
+		CharIterator iterator() {
+			return new CharIterator() {
+				private int w = 0;
+				private long word = words[0];
+
+				@Override
+				public boolean hasNext() {
+					while (word == 0 && w < BITMAP_WORDS - 1)
+						word = words[++w];
+					return word != 0;
+				}
+
+				@Override
+				public char next() {
+					hasNext();
+					long t = word & -word;
+					char r = (char) (w * 64 + Long.bitCount(t - 1));
+					word ^= t;
+					return r;
+				}
+			};
+		}
+
+		@Override
+		int sizeInBytes() {
+			return 16 + words.length * 8;
+		}
+
+		@Override
+		int numberOfRuns() {
+			int runs = 0;
+			for (int i = 0; i < BITMAP_WORDS; ++i) {
+				long w = words[i];
+				long next = i + 1 < BITMAP_WORDS ? words[i + 1] : 0;
+				// count the run ends: set bits whose successor is not set
+				runs += Long.bitCount(w & ~(w >>> 1 | next << 63));
+			}
+			return runs;
+		}
+
+		Container and(BitmapContainer o) {
+			long[] r = new long[BITMAP_WORDS];
+			int c = 0;
+			for (int i = 0; i < BITMAP_WORDS; ++i) {
+				r[i] = words[i] & o.words[i];
+				c += Long.bitCount(r[i]);
+			}
+			return new BitmapContainer(r, c).shrink();
+		}
+
+		int andCardinality(BitmapContainer o) {
+			int c = 0;
+			for (int i = 0; i < BITMAP_WORDS; ++i)
+				c += Long.bitCount(words[i] & o.words[i]);
+			return c;
+		}
+
+		void orInPlace(Container o) {
+			if (o instanceof BitmapContainer) {
+				long[] ow = ((BitmapContainer) o).words;
+				int c = 0;
+				for (int i = 0; i < BITMAP_WORDS; ++i) {
+					words[i] |= ow[i];
+					c += Long.bitCount(words[i]);
+				}
+				card = c;
+			} else {
+				for (CharIterator it = o.iterator(); it.hasNext();)
+					add(it.next());
+			}
+		}
+
+		void andNotInPlace(Container o) {
+			if (o instanceof BitmapContainer) {
+				long[] ow = ((BitmapContainer) o).words;
+				int c = 0;
+				for (int i = 0; i < BITMAP_WORDS; ++i) {
+					words[i] &= ~ow[i];
+					c += Long.bitCount(words[i]);
+				}
+				card = c;
+			} else {
+				for (CharIterator it = o.iterator(); it.hasNext();) {
+					char x = it.next();
+					long before = words[x >>> 6];
+					long after = before & ~(1L << x);
+					if (before != after) {
+						words[x >>> 6] = after;
+						card--;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * run length encoded container: pairs of (start, length-1)
+	 */
+	private static final class RunContainer extends Container {
+		private final char[] runs;
+		private final int nbrRuns;
+		private final int card;
+
+		RunContainer(char[] runs, int nbrRuns) {
+			this.runs = runs;
+			this.nbrRuns = nbrRuns;
+			int c = 0;
+			for (int i = 0; i < nbrRuns; ++i)
+				c += runs[2 * i + 1] + 1;
+			this.card = c;
+		}
+
+		static RunContainer of(Container c, int nbrRuns) {
+			char[] runs = new char[2 * nbrRuns];
+			int k = -1;
+			int prev = -2;
+			for (CharIterator it = c.iterator(); it.hasNext();) {
+				char x = it.next();
+				if (x == prev + 1)
+					runs[2 * k + 1]++;
+				else {
+					k++;
+					runs[2 * k] = x;
+					runs[2 * k + 1] = 0;
+				}
+				prev = x;
+			}
+			return new RunContainer(runs, k + 1);
+		}
+
+		@Override
+		int cardinality() {
+			return card;
+		}
+
+		@Override
+		boolean contains(char x) {
+			int lo = 0, hi = nbrRuns - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				int start = runs[2 * mid];
+				if (x < start)
+					hi = mid - 1;
+				else if (x > start + runs[2 * mid + 1])
+					lo = mid + 1;
+				else
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		Container add(char x) {
+			if (contains(x))
+				return this;
+			return expandRuns().add(x);
+		}
+
+		@Override
+		Container copy() {
+			return this; // immutable
+		}
+
+		@Override
+		Container expandRuns() {
+			return card <= ARRAY_MAX ? toArray(this) : toBitmap();
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			BitmapContainer r = new BitmapContainer();
+			for (int i = 0; i < nbrRuns; ++i) {
+				int start = runs[2 * i];
+				int end = start + runs[2 * i + 1];
+				for (int x = start; x <= end; ++x)
+					r.words[x >>> 6] |= 1L << x;
+			}
+			r.card = card;
+			return r;
+		}
+
+		@Override
+		CharIterator iterator() {
+			return new CharIterator() {
+				private int run = 0;
+				private int offset = 0;
+
+				@Override
+				public boolean hasNext() {
+					return run < nbrRuns;
+				}
+
+				@Override
+				public char next() {
+					char r = (char) (runs[2 * run] + offset);
+					if (offset++ >= runs[2 * run + 1]) {
+						run++;
+						offset = 0;
+					}
+					return r;
+				}
+			};
+		}
+
+		@Override
+		int sizeInBytes() {
+			return 16 + runs.length * 2;
+		}
+
+		@Override
+		int numberOfRuns() {
+			return nbrRuns;
+		}
+
+		private int start(int run) {
+			return runs[2 * run];
+		}
+
+		private int end(int run) {
+			return runs[2 * run] + runs[2 * run + 1];
+		}
+
+		/**
+		 * counts the shared elements directly over the runs, without expanding them
+		 */
+		int andRunsCardinality(Container o) {
+			if (o instanceof ArrayContainer) {
+				ArrayContainer a = (ArrayContainer) o;
+				int k = 0;
+				int run = 0;
+				for (int i = 0; i < a.card && run < nbrRuns; ++i) {
+					char x = a.content[i];
+					while (run < nbrRuns && end(run) < x)
+						run++;
+					if (run < nbrRuns && start(run) <= x)
+						k++;
+				}
+				return k;
+			}
+			if (o instanceof BitmapContainer) {
+				long[] words = ((BitmapContainer) o).words;
+				int k = 0;
+				for (int run = 0; run < nbrRuns; ++run)
+					k += countRange(words, start(run), end(run));
+				return k;
+			}
+			RunContainer r = (RunContainer) o;
+			int k = 0;
+			int i = 0, j = 0;
+			while (i < nbrRuns && j < r.nbrRuns) {
+				int from = Math.max(start(i), r.start(j));
+				int to = Math.min(end(i), r.end(j));
+				if (from <= to)
+					k += to - from + 1;
+				if (end(i) < r.end(j))
+					i++;
+				else
+					j++;
+			}
+			return k;
+		}
+
+		/**
+		 * intersects directly over the runs, just allocating the result
+		 */
+		Container andRuns(Container o) {
+			if (o instanceof ArrayContainer) {
+				ArrayContainer a = (ArrayContainer) o;
+				char[] r = new char[a.card];
+				int k = 0;
+				int run = 0;
+				for (int i = 0; i < a.card && run < nbrRuns; ++i) {
+					char x = a.content[i];
+					while (run < nbrRuns && end(run) < x)
+						run++;
+					if (run < nbrRuns && start(run) <= x)
+						r[k++] = x;
+				}
+				return new ArrayContainer(r, k);
+			}
+			if (o instanceof BitmapContainer) {
+				long[] words = ((BitmapContainer) o).words;
+				long[] r = new long[BITMAP_WORDS];
+				for (int run = 0; run < nbrRuns; ++run) {
+					final int from = start(run);
+					final int to = end(run);
+					for (int w = from >>> 6; w <= to >>> 6; ++w)
+						r[w] |= words[w] & rangeMask(w, from, to);
+				}
+				int c = 0;
+				for (long w : r)
+					c += Long.bitCount(w);
+				return new BitmapContainer(r, c).shrink();
+			}
+			RunContainer b = (RunContainer) o;
+			char[] r = new char[2 * (nbrRuns + b.nbrRuns)];
+			int k = 0;
+			int i = 0, j = 0;
+			while (i < nbrRuns && j < b.nbrRuns) {
+				int from = Math.max(start(i), b.start(j));
+				int to = Math.min(end(i), b.end(j));
+				if (from <= to) {
+					r[2 * k] = (char) from;
+					r[2 * k + 1] = (char) (to - from);
+					k++;
+				}
+				if (end(i) < b.end(j))
+					i++;
+				else
+					j++;
+			}
+			return new RunContainer(r, k);
+		}
+	}
+
+	/**
+	 * @return the bits of the given word within the inclusive range [from, to]
+	 */
+	private static long rangeMask(int word, int from, int to) {
+		long mask = -1L;
+		if (from > word * 64)
+			mask &= -1L << from;
+		if (to < word * 64 + 63)
+			mask &= -1L >>> (63 - (to & 63));
+		return mask;
+	}
+
+	/**
+	 * @return the number of set bits within the inclusive range [from, to]
+	 */
+	private static int countRange(long[] words, int from, int to) {
+		int c = 0;
+		for (int w = from >>> 6; w <= to >>> 6; ++w)
+			c += Long.bitCount(words[w] & rangeMask(w, from, to));
+		return c;
+	}
+}
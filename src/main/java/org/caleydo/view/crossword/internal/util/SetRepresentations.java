@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.util;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * chooses the set backend for a given set of ids based on a simple cost model.
+ *
+ * the cost of a backend is its estimated memory footprint, which is also a good proxy for the time of the dominating
+ * set operations, as they scan the whole representation. The estimation takes the cardinality, the id range (a
+ * bitset is allocated up to the largest id) and the clustering (runs per 2^16 chunk for the compressed bitmap) into
+ * account. All decisions are recorded in global statistics, see {@link #getStatistics()}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class SetRepresentations {
+	public enum ERepresentation {
+		SORTED, BITSET, ROARING, SUBSET
+	}
+
+	/**
+	 * a bitset is preferred even if it is this factor larger than the best alternative, as its kernels are branch free
+	 * word operations
+	 */
+	private static final float BITSET_BONUS = 1.25f;
+	private static final int OBJECT_OVERHEAD = 16;
+	/**
+	 * overhead of a single container in a {@link RoaringSet}: key, reference and container object
+	 */
+	private static final int CONTAINER_OVERHEAD = 6 + OBJECT_OVERHEAD;
+
+	private static final AtomicLong[] chosen = new AtomicLong[ERepresentation.values().length];
+	private static final AtomicLong chosenBytes = new AtomicLong();
+	private static final AtomicLong plainBitSetBytes = new AtomicLong();
+	static {
+		for (int i = 0; i < chosen.length; ++i)
+			chosen[i] = new AtomicLong();
+	}
+
+	private SetRepresentations() {
+
+	}
+
+	/**
+	 * creates an immutable set of the given values using the best fitting backend
+	 *
+	 * @param sorted
+	 *            ascending sorted values without duplicates, will be owned by the result
+	 * @return
+	 */
+	public static Set<Integer> create(int[] sorted) {
+		final int size = sorted.length;
+		if (size == 0)
+			return SortedIntSet.EMPTY;
+
+		final long sortedCost = OBJECT_OVERHEAD + 4L * size;
+		if (sorted[0] < 0) { // just the sorted array supports negative values
+			chosen[ERepresentation.SORTED.ordinal()].incrementAndGet();
+			chosenBytes.addAndGet(sortedCost);
+			return SortedIntSet.of(sorted, size);
+		}
+		final long bitSetCost = bitSetCost(sorted);
+		final long roaringCost = roaringCost(sorted);
+
+		ERepresentation r;
+		long cost;
+		if (bitSetCost <= Math.min(sortedCost, roaringCost) * BITSET_BONUS) {
+			r = ERepresentation.BITSET;
+			cost = bitSetCost;
+		} else if (sortedCost <= roaringCost) {
+			r = ERepresentation.SORTED;
+			cost = sortedCost;
+		} else {
+			r = ERepresentation.ROARING;
+			cost = roaringCost;
+		}
+		chosen[r.ordinal()].incrementAndGet();
+		chosenBytes.addAndGet(cost);
+		plainBitSetBytes.addAndGet(bitSetCost);
+
+		switch (r) {
+		case BITSET:
+			return ImmutableBitSetSet.of(sorted, size);
+		case ROARING:
+			return RoaringSet.of(sorted, size);
+		default:
+			return SortedIntSet.of(sorted, size);
+		}
+	}
+
+	/**
+	 * creates an immutable set of the given values, which are known to be likely a subset of the given parent. If so
+	 * and if it is cheaper than any standalone backend, the result will be a {@link SubsetIntSet} view of the parent
+	 *
+	 * @param sorted
+	 *            ascending sorted values without duplicates, will be owned by the result
+	 * @param parent
+	 *            the potential superset
+	 * @return
+	 */
+	public static Set<Integer> create(int[] sorted, Set<Integer> parent) {
+		final int size = sorted.length;
+		if (size == 0 || sorted[0] < 0 || !(parent instanceof IRankedIntSet) || size > parent.size())
+			return create(sorted);
+		final IRankedIntSet p = (IRankedIntSet) parent;
+		final int first = p.rank(sorted[0]);
+		final int last = p.rank(sorted[size - 1]);
+		if (first < 0 || last < 0)
+			return create(sorted);
+		final long subsetCost = OBJECT_OVERHEAD + 8L * SubsetIntSet.windowWords(first, last);
+		final long bestCost = Math.min(OBJECT_OVERHEAD + 4L * size, Math.min(bitSetCost(sorted), roaringCost(sorted)));
+		if (subsetCost > bestCost)
+			return create(sorted);
+		SubsetIntSet r = SubsetIntSet.of(p, sorted, size);
+		if (r == null) // not a subset
+			return create(sorted);
+		chosen[ERepresentation.SUBSET.ordinal()].incrementAndGet();
+		chosenBytes.addAndGet(subsetCost);
+		plainBitSetBytes.addAndGet(bitSetCost(sorted));
+		return r;
+	}
+
+	private static long bitSetCost(int[] sorted) {
+		return OBJECT_OVERHEAD + 8L * ((sorted[sorted.length - 1] >>> 6) + 1);
+	}
+
+	/**
+	 * estimates the size of a {@link RoaringSet} by computing the cardinality and number of runs per chunk
+	 */
+	private static long roaringCost(int[] sorted) {
+		long cost = OBJECT_OVERHEAD;
+		int i = 0;
+		while (i < sorted.length) {
+			final int key = sorted[i] >>> 16;
+			int cardinality = 0;
+			int runs = 0;
+			int last = -2;
+			for (; i < sorted.length && (sorted[i] >>> 16) == key; ++i) {
+				if (sorted[i] != last + 1)
+					runs++;
+				last = sorted[i];
+				cardinality++;
+			}
+			int array = 2 * cardinality;
+			int bitmap = 8192;
+			int run = 2 + 4 * runs;
+			cost += CONTAINER_OVERHEAD + Math.min(array, Math.min(bitmap, run));
+		}
+		return cost;
+	}
+
+	/**
+	 * @return the number of times the given representation was chosen
+	 */
+	public static long getChosen(ERepresentation representation) {
+		return chosen[representation.ordinal()].get();
+	}
+
+	/**
+	 * @return a summary of the decisions made so far
+	 */
+	public static String getStatistics() {
+		StringBuilder b = new StringBuilder("SetRepresentations [");
+		for (ERepresentation r : ERepresentation.values())
+			b.append(r).append('=').append(getChosen(r)).append(", ");
+		b.append("bytes=").append(chosenBytes.get());
+		b.append(", plainBitSetBytes=").append(plainBitSetBytes.get());
+		return b.append(']').toString();
+	}
+
+	public static void resetStatistics() {
+		for (AtomicLong c : chosen)
+			c.set(0);
+		chosenBytes.set(0);
+		plainBitSetBytes.set(0);
+	}
+}
@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.caleydo.view.crossword.api.model.IIntConsumer;
+import org.caleydo.view.crossword.api.model.IIntIterator;
+
+/**
+ * an immutable set implementation based on a sorted primitive int array.
+ *
+ * the set operations are implemented as merge kernels, switching to galloping (exponential search) if one side is
+ * much smaller than the other one
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class SortedIntSet extends AbstractSet<Integer> implements IRankedIntSet {
+	/**
+	 * size ratio between the two sets, when galloping will be used instead of a linear merge
+	 */
+	private static final int GALLOP_RATIO = 32;
+
+	public static final SortedIntSet EMPTY = new SortedIntSet(new int[0]);
+
+	private final int[] values;
+
+	private SortedIntSet(int[] values) {
+		this.values = values;
+	}
+
+	public static SortedIntSet of(Collection<Integer> ids) {
+		if (ids.isEmpty())
+			return EMPTY;
+		int[] r = new int[ids.size()];
+		int i = 0;
+		for (Integer id : ids)
+			r[i++] = id.intValue();
+		Arrays.sort(r);
+		// remove duplicates
+		int k = 1;
+		for (i = 1; i < r.length; ++i)
+			if (r[i] != r[k - 1])
+				r[k++] = r[i];
+		return new SortedIntSet(k == r.length ? r : Arrays.copyOf(r, k));
+	}
+
+	/**
+	 * @param values
+	 *            arbitrary ordered values, possibly containing duplicates, will be copied
+	 * @param size
+	 *            the number of valid values in the array
+	 */
+	public static SortedIntSet copyOf(int[] values, int size) {
+		if (size == 0)
+			return EMPTY;
+		int[] r = Arrays.copyOf(values, size);
+		Arrays.sort(r);
+		int k = 1;
+		for (int i = 1; i < r.length; ++i)
+			if (r[i] != r[k - 1])
+				r[k++] = r[i];
+		return of(r, k);
+	}
+
+	/**
+	 * @param sorted
+	 *            ascending sorted values without duplicates, will be owned by the result
+	 * @param size
+	 *            the number of valid values in the array
+	 */
+	static SortedIntSet of(int[] sorted, int size) {
+		if (size == 0)
+			return EMPTY;
+		return new SortedIntSet(size == sorted.length ? sorted : Arrays.copyOf(sorted, size));
+	}
+
+	/**
+	 * @return the backing sorted array, not to be modified
+	 */
+	int[] values() {
+		return values;
+	}
+
+	@Override
+	public boolean contains(int v) {
+		return Arrays.binarySearch(values, v) >= 0;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Integer))
+			return false;
+		return contains(((Integer) o).intValue());
+	}
+
+	@Override
+	public int rank(int v) {
+		int i = Arrays.binarySearch(values, v);
+		return i >= 0 ? i : -1;
+	}
+
+	@Override
+	public int select(int rank) {
+		return values[rank];
+	}
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return values.length == 0;
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			private int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < values.length;
+			}
+
+			@Override
+			public Integer next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return values[i++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public IIntIterator intIterator() {
+		return new IIntIterator() {
+			private int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < values.length;
+			}
+
+			@Override
+			public int nextInt() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return values[i++];
+			}
+		};
+	}
+
+	@Override
+	public void forEachInt(IIntConsumer consumer) {
+		for (int v : values)
+			consumer.accept(v);
+	}
+
+	@Override
+	public int[] toIntArray() {
+		return values.clone();
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 0;
+		for (int v : values)
+			h += v;
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (o instanceof SortedIntSet)
+			return Arrays.equals(values, ((SortedIntSet) o).values);
+		return super.equals(o);
+	}
+
+	public static SortedIntSet and(SortedIntSet a, SortedIntSet b) {
+		int[] r = new int[Math.min(a.size(), b.size())];
+		return of(r, intersect(a.values, b.values, r));
+	}
+
+	public static SortedIntSet or(SortedIntSet a, SortedIntSet b) {
+		int[] r = new int[a.size() + b.size()];
+		return of(r, union(a.values, b.values, r));
+	}
+
+	public static SortedIntSet andNot(SortedIntSet a, SortedIntSet b) {
+		int[] r = new int[a.size()];
+		return of(r, difference(a.values, b.values, r));
+	}
+
+	public static int andCardinality(SortedIntSet a, SortedIntSet b) {
+		return intersect(a.values, b.values, null);
+	}
+
+	public static int orCardinality(SortedIntSet a, SortedIntSet b) {
+		return a.size() + b.size() - andCardinality(a, b);
+	}
+
+	public static int andNotCardinality(SortedIntSet a, SortedIntSet b) {
+		return a.size() - andCardinality(a, b);
+	}
+
+	/**
+	 * intersects the two sorted arrays
+	 *
+	 * @param out
+	 *            the target array or <code>null</code> to just count
+	 * @return the number of shared elements
+	 */
+	private static int intersect(int[] a, int[] b, int[] out) {
+		if (a.length > b.length) { // smaller at the beginning
+			int[] t = a;
+			a = b;
+			b = t;
+		}
+		if (a.length == 0)
+			return 0;
+		if (a.length * GALLOP_RATIO < b.length)
+			return intersectGalloping(a, b, out);
+		int k = 0;
+		int i = 0, j = 0;
+		while (i < a.length && j < b.length) {
+			int va = a[i];
+			int vb = b[j];
+			if (va < vb)
+				i++;
+			else if (va > vb)
+				j++;
+			else {
+				if (out != null)
+					out[k] = va;
+				k++;
+				i++;
+				j++;
+			}
+		}
+		return k;
+	}
+
+	private static int intersectGalloping(int[] small, int[] large, int[] out) {
+		int k = 0;
+		int j = 0;
+		for (int i = 0; i < small.length && j < large.length; ++i) {
+			int v = small[i];
+			j = gallop(large, j, v);
+			if (j < large.length && large[j] == v) {
+				if (out != null)
+					out[k] = v;
+				k++;
+				j++;
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * exponential search for the first index &gt;= from with a value &gt;= v
+	 */
+	private static int gallop(int[] arr, int from, int v) {
+		if (from >= arr.length || arr[from] >= v)
+			return from;
+		int step = 1;
+		int lo = from;
+		int hi = from + step;
+		while (hi < arr.length && arr[hi] < v) {
+			lo = hi;
+			step <<= 1;
+			hi = from + step;
+		}
+		hi = Math.min(hi, arr.length);
+		// binary search in (lo, hi]
+		int i = Arrays.binarySearch(arr, lo + 1, hi, v);
+		return i >= 0 ? i : -i - 1;
+	}
+
+	private static int union(int[] a, int[] b, int[] out) {
+		int k = 0;
+		int i = 0, j = 0;
+		while (i < a.length && j < b.length) {
+			int va = a[i];
+			int vb = b[j];
+			if (va < vb) {
+				out[k++] = va;
+				i++;
+			} else if (va > vb) {
+				out[k++] = vb;
+				j++;
+			} else {
+				out[k++] = va;
+				i++;
+				j++;
+			}
+		}
+		while (i < a.length)
+			out[k++] = a[i++];
+		while (j < b.length)
+			out[k++] = b[j++];
+		return k;
+	}
+
+	private static int difference(int[] a, int[] b, int[] out) {
+		int k = 0;
+		int j = 0;
+		final boolean gallop = a.length * GALLOP_RATIO < b.length;
+		for (int i = 0; i < a.length; ++i) {
+			int v = a[i];
+			if (gallop)
+				j = gallop(b, j, v);
+			else
+				while (j < b.length && b[j] < v)
+					j++;
+			if (j >= b.length || b[j] != v)
+				out[k++] = v;
+		}
+		return k;
+	}
+}
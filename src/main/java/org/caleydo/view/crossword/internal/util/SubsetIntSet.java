@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.crossword.internal.util;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.caleydo.view.crossword.api.model.IIntConsumer;
+import org.caleydo.view.crossword.api.model.IIntIterator;
+
+/**
+ * an immutable subset of a {@link IRankedIntSet}, stored as a bitmap over the ranks of the selected parent values
+ * within the window between the smallest and largest selected one.
+ *
+ * e.g. a group of a split perspective just needs one bit per parent id within its window instead of a set of its own
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class SubsetIntSet extends AbstractSet<Integer> implements IIntSet {
+	private final IRankedIntSet parent;
+	/**
+	 * parent rank of the first bit of the {@link #selector}
+	 */
+	private final int offset;
+	private final long[] selector;
+	private final int cardinality;
+
+	private SubsetIntSet(IRankedIntSet parent, int offset, long[] selector, int cardinality) {
+		this.parent = parent;
+		this.offset = offset;
+		this.selector = selector;
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * @param parent
+	 * @param sorted
+	 *            ascending sorted values without duplicates
+	 * @param size
+	 *            the number of valid values in the array, &gt; 0
+	 * @return the subset or <code>null</code> if not all values are part of the parent
+	 */
+	static SubsetIntSet of(IRankedIntSet parent, int[] sorted, int size) {
+		final int first = parent.rank(sorted[0]);
+		final int last = parent.rank(sorted[size - 1]);
+		if (first < 0 || last < 0)
+			return null;
+		long[] selector = new long[windowWords(first, last)];
+		for (int i = 0; i < size; ++i) {
+			int r = parent.rank(sorted[i]);
+			if (r < 0)
+				return null;
+			r -= first;
+			selector[r >>> 6] |= 1L << r;
+		}
+		return new SubsetIntSet(parent, first, selector, size);
+	}
+
+	/**
+	 * @return the number of selector words needed for the given window of parent ranks
+	 */
+	static int windowWords(int firstRank, int lastRank) {
+		return ((lastRank - firstRank) >>> 6) + 1;
+	}
+
+	/**
+	 * @return the set this is a subset of
+	 */
+	public IRankedIntSet getParent() {
+		return parent;
+	}
+
+	@Override
+	public boolean contains(int v) {
+		int r = parent.rank(v) - offset;
+		if (r < 0 || (r >>> 6) >= selector.length)
+			return false;
+		return (selector[r >>> 6] & (1L << r)) != 0;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Integer))
+			return false;
+		return contains(((Integer) o).intValue());
+	}
+
+	@Override
+	public int size() {
+		return cardinality;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return cardinality == 0;
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		final IIntIterator it = intIterator();
+		return new Iterator<Integer>() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public Integer next() {
+				return it.nextInt();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public IIntIterator intIterator() {
+		return new IIntIterator() {
+			private int i = 0;
+			private long w = selector.length > 0 ? selector[0] : 0;
+
+			@Override
+			public boolean hasNext() {
+				while (w == 0 && i + 1 < selector.length)
+					w = selector[++i];
+				return w != 0;
+			}
+
+			@Override
+			public int nextInt() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				long t = w & -w;
+				w ^= t;
+				return parent.select(offset + i * 64 + Long.numberOfTrailingZeros(t));
+			}
+		};
+	}
+
+	@Override
+	public void forEachInt(IIntConsumer consumer) {
+		for (int i = 0; i < selector.length; ++i) {
+			long w = selector[i];
+			while (w != 0) {
+				long t = w & -w;
+				consumer.accept(parent.select(offset + i * 64 + Long.numberOfTrailingZeros(t)));
+				w ^= t;
+			}
+		}
+	}
+
+	@Override
+	public int[] toIntArray() {
+		final int[] r = new int[cardinality];
+		int k = 0;
+		for (IIntIterator it = intIterator(); it.hasNext();)
+			r[k++] = it.nextInt();
+		return r;
+	}
+
+	/**
+	 * @return the number of elements shared by two subsets of the same parent, by combining their selectors
+	 */
+	static int andCardinality(SubsetIntSet a, SubsetIntSet b) {
+		assert a.parent == b.parent;
+		final int from = Math.max(a.offset, b.offset);
+		final int to = Math.min(a.offset + a.selector.length * 64, b.offset + b.selector.length * 64);
+		int r = 0;
+		for (int rank = from; rank < to; rank += 64) {
+			long w = a.wordAt(rank) & b.wordAt(rank);
+			if (to - rank < 64)
+				w &= (1L << (to - rank)) - 1;
+			r += Long.bitCount(w);
+		}
+		return r;
+	}
+
+	/**
+	 * @return the 64 selector bits starting at the given parent rank
+	 */
+	private long wordAt(int rank) {
+		final int bit = rank - offset;
+		final int u = bit >>> 6;
+		final int shift = bit & 63;
+		long w = u < selector.length ? selector[u] >>> shift : 0;
+		if (shift > 0 && u + 1 < selector.length)
+			w |= selector[u + 1] << (64 - shift);
+		return w;
+	}
+}
@@ -5,7 +5,9 @@
  *******************************************************************************/
 package org.caleydo.view.crossword.spi.config;
 
+import org.caleydo.view.crossword.api.ui.layout.EEdgeType;
 import org.caleydo.view.crossword.api.ui.layout.IGraphVertex;
+import org.caleydo.view.crossword.spi.model.IBandRenderer.EBandMode;
 
 
 /**
@@ -21,7 +23,57 @@ public class MultiConfig {
 		return ElementConfig.ALL;
 	}
 
+	/**
+	 * @return the initial rendering mode of the bands
+	 */
+	public EBandMode getBandMode() {
+		return EBandMode.PAIRWISE;
+	}
+
 	public ElementConfig getSplittedElementConfig(IGraphVertex parent) {
 		return getDefaultElementConfig();
 	}
+
+	/**
+	 * @param parent
+	 *            the vertex to split
+	 * @return the maximal number of elements a split creates, the smallest groups beyond will be aggregated into a
+	 *         single expandable element. By default every group gets an element of its own
+	 */
+	public int getMaxSplitChildren(IGraphVertex parent) {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @param parent
+	 *            the vertex to split
+	 * @return the minimal size of a group to get an element of its own, smaller ones will be aggregated
+	 */
+	public int getMinSplitGroupSize(IGraphVertex parent) {
+		return 1;
+	}
+
+	/**
+	 * @return the minimal number of shared ids of a {@link EEdgeType#SHARED} band to be shown, smaller ones will be
+	 *         pruned till their overlap grows
+	 */
+	public int getMinBandOverlap() {
+		return 1;
+	}
+
+	/**
+	 * @return the minimal fraction of shared ids relative to the smaller end of a {@link EEdgeType#SHARED} band to be
+	 *         shown
+	 */
+	public float getMinBandOverlapFraction() {
+		return 0;
+	}
+
+	/**
+	 * @return the maximal number of {@link EEdgeType#SHARED} bands per vertex, just the ones with the largest overlap
+	 *         will be shown
+	 */
+	public int getMaxBandsPerVertex() {
+		return Integer.MAX_VALUE;
+	}
 }
@@ -11,6 +11,7 @@ import org.caleydo.core.util.base.ILabeled;
 import org.caleydo.core.view.opengl.layout2.GLGraphics;
 import org.caleydo.core.view.opengl.layout2.IGLElementContext;
 import org.caleydo.view.crossword.api.model.TypedSet;
+import org.caleydo.view.crossword.api.model.TypedSetFragments;
 
 /**
  * a renderer of a band including a label and the represented ids
@@ -37,6 +38,24 @@ public interface IBandRenderer extends ILabeled {
 	 */
 	IDType getIdType();
 
+	/**
+	 * how bands are rendered
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public enum EBandMode {
+		/**
+		 * a band just shows the ids shared by its two ends
+		 */
+		PAIRWISE,
+		/**
+		 * in addition, a band highlights the fragment of ids that are shared exclusively by its two ends and no other
+		 * element of the same {@link IDType}
+		 */
+		FRAGMENT
+	}
+
 	/**
 	 * the host of the band
 	 *
@@ -45,13 +64,43 @@ public interface IBandRenderer extends ILabeled {
 	 */
 	public interface IBandHost {
 		/**
-		 * return the number of elements that are selected according to the current {@link SelectionType}
+		 * return the number of elements shared by both given sets that are selected according to the current
+		 * {@link SelectionType}, computed as a count without materializing the intersection
+		 *
+		 * @param source
+		 * @param target
+		 * @param type
+		 * @return
+		 */
+		int getSelected(TypedSet source, TypedSet target, SelectionType type);
+
+		/**
+		 * whether any element of the given {@link IDType} is selected according to the current
+		 * {@link SelectionType}, i.e. whether {@link #getSelected(TypedSet, TypedSet, SelectionType)} needs to be computed at all
 		 *
-		 * @param ids
+		 * @param idType
 		 * @param type
 		 * @return
 		 */
-		int getSelected(TypedSet ids, SelectionType type);
+		boolean hasSelected(IDType idType, SelectionType type);
+
+		/**
+		 * returns the rendering mode of the bands of the given {@link IDType}, which falls back to
+		 * {@link EBandMode#PAIRWISE} if no fragments are available for it
+		 *
+		 * @param idType
+		 * @return
+		 */
+		EBandMode getBandMode(IDType idType);
+
+		/**
+		 * return the overlap fragments of all sets of the given {@link IDType}, only used in
+		 * {@link EBandMode#FRAGMENT}
+		 *
+		 * @param idType
+		 * @return the fragments or <code>null</code> if not available
+		 */
+		TypedSetFragments getFragments(IDType idType);
 
 		/**
 		 * return the {@link IGLElementContext}
@@ -19,9 +19,10 @@ import org.caleydo.view.crossword.api.ui.layout.IVertexConnector;
 public interface IConnectorStrategy {
 	/**
 	 * @param ids
-	 * @param intersection
+	 * @param intersectionSize
+	 *            the number of shared ids, the intersection itself is computed lazily
 	 * @return the center and radius attaching the vertex
 	 */
-	CenterRadius update(TypedSet ids, TypedSet intersection);
+	CenterRadius update(TypedSet ids, int intersectionSize);
 
 }